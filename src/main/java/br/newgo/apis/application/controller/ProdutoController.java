@@ -1,27 +1,85 @@
 package br.newgo.apis.application.controller;
 
+import br.newgo.apis.application.dtos.AtualizacaoLoteProdutoDTO;
+import br.newgo.apis.application.dtos.PaginaDTO;
+import br.newgo.apis.application.dtos.SugestaoDTO;
 import br.newgo.apis.application.dtos.RespostaDTO;
+import br.newgo.apis.application.utils.ProdutoAtributos;
 import br.newgo.apis.application.utils.ProdutoMapeador;
 import br.newgo.apis.domain.services.JsonProdutoValidador;
 import br.newgo.apis.domain.services.ProdutoService;
+import br.newgo.apis.domain.services.ResultadoLote;
+import br.newgo.apis.infrastructure.ConexaoBancoDados;
+import br.newgo.apis.infrastructure.UnidadeDeTrabalho;
+import br.newgo.apis.infrastructure.config.ConfigProperties;
 import br.newgo.apis.infrastructure.dao.ProdutoDAO;
 import br.newgo.apis.application.dtos.ProdutoDTO;
 import com.google.gson.JsonObject;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import static br.newgo.apis.application.utils.JsonMapeador.*;
 import static br.newgo.apis.application.utils.ProdutoAtributos.*;
-import static br.newgo.apis.application.utils.ProdutoMapeador.mapearParaAtualizacaoLoteDTO;
 
 public class ProdutoController{
+    private static final Logger LOGGER = Logger.getLogger(ProdutoController.class.getName());
     private final ProdutoService produtoService;
     private final JsonProdutoValidador jsonProdutoValidador;
+    private final boolean loteEmTransacaoUnica;
+    private final int tamanhoBloco;
+    private final int paralelismo;
+    private final ExecutorService executorLote;
 
     public ProdutoController() {
         produtoService = new ProdutoService(new ProdutoDAO());
         jsonProdutoValidador = new JsonProdutoValidador();
+        loteEmTransacaoUnica = ConfigProperties.getBoolean("lote.transacao-unica", false);
+        tamanhoBloco = Math.max(1, ConfigProperties.getInt("lote.tamanho-bloco", 1000));
+        paralelismo = Math.max(1, ConfigProperties.getInt("lote.paralelismo", 1));
+        executorLote = paralelismo == 1 ? null : Executors.newFixedThreadPool(paralelismo, new ThreadFactory() {
+            private final AtomicInteger contador = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable tarefa) {
+                Thread thread = new Thread(tarefa, "lote-" + contador.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Encerra o executor de lotes, recusando novas partições e aguardando, por alguns segundos, o término
+     * das que já foram aceitas.
+     */
+    public void encerrar() {
+        if (executorLote == null)
+            return;
+        executorLote.shutdown();
+        try {
+            executorLote.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     public RespostaDTO<Object> criar(String jsonRequisicao) {
@@ -29,30 +87,50 @@ public class ProdutoController{
         return new RespostaDTO<Object>("Sucesso", "Produto cadastrado com sucesso.", produtoDTO);
     }
 
-    public List<RespostaDTO<Object>> criarLote(String jsonRequisicao) {
-        List<RespostaDTO<Object>> respostasDTO  = new ArrayList<>();
+    public void criarLote(Iterator<JsonObject> itens, Consumer<RespostaDTO<Object>> respostas) {
+        executarLote(respostasLote -> processarLote(itens,
+                ATRIBUTOS_OBRIGATORIOS_SALVAR,
+                ProdutoMapeador::mapearParaDTO,
+                produtoDTO -> Arrays.asList("nome:" + produtoDTO.getNome(), "ean13:" + produtoDTO.getEan13()),
+                produtoService::criarEmLote,
+                "Produto cadastrado com sucesso.",
+                respostasLote), respostas);
+    }
 
-        for(JsonObject objetoJson: mapearParaListaDeObjetosJson(jsonRequisicao)){
-            try{
-                ProdutoDTO produtoDTO =  salvarProduto(objetoJson);
-                addRespostaSucesso(produtoDTO, "Produto cadastrado com sucesso.", respostasDTO);
-            }catch (IllegalArgumentException e){
-                addRespostaErro(objetoJson, e.getMessage(), respostasDTO);
-            }
-        }
-        return respostasDTO;
+    public long obterVersaoCatalogo() {
+        return produtoService.obterVersaoCatalogo();
+    }
+
+    public void obterTodos(LongConsumer versao, Consumer<ProdutoDTO> consumidor) {
+        produtoService.obterTodos(versao, consumidor);
+    }
+
+    public void obterTodosPorStatus(String status, LongConsumer versao, Consumer<ProdutoDTO> consumidor) {
+        produtoService.obterTodosPorStatus(status, versao, consumidor);
+    }
+
+    public void obterTodosComEstoqueBaixo(Consumer<ProdutoDTO> consumidor) {
+        produtoService.obterTodosComEstoqueBaixo(consumidor);
+    }
+
+    public PaginaDTO<ProdutoDTO> obterPagina(String cursor, String limite) {
+        return produtoService.obterPagina(cursor, limite);
     }
 
-    public List<ProdutoDTO> obterTodos() {
-        return produtoService.obterTodos();
+    public PaginaDTO<ProdutoDTO> obterPaginaPorStatus(String status, String cursor, String limite) {
+        return produtoService.obterPaginaPorStatus(status, cursor, limite);
     }
 
-    public List<ProdutoDTO> obterTodosPorStatus(String status) {
-        return produtoService.obterTodosPorStatus(status);
+    public PaginaDTO<ProdutoDTO> obterPaginaComEstoqueBaixo(String cursor, String limite) {
+        return produtoService.obterPaginaComEstoqueBaixo(cursor, limite);
     }
 
-    public List<ProdutoDTO> obterTodosComEstoqueBaixo() {
-        return produtoService.obterTodosComEstoqueBaixo();
+    public PaginaDTO<ProdutoDTO> buscar(String texto, String cursor, String limite) {
+        return produtoService.buscar(texto, cursor, limite);
+    }
+
+    public List<SugestaoDTO> autocompletar(String prefixo, String limite) {
+        return produtoService.autocompletar(prefixo, limite);
     }
 
     public ProdutoDTO obterDtoAtivoPorHash(String hash) {
@@ -63,62 +141,260 @@ public class ProdutoController{
         return produtoService.obterDtoPorHash(hash);
     }
 
-    public RespostaDTO<Object> atualizar(String hash, String jsonRequisicao) {
+    public RespostaDTO<Object> atualizar(String hash, String jsonRequisicao, String versaoEsperada) {
         JsonObject objetoJson = mapearParaObjetoJson(jsonRequisicao);
 
         jsonProdutoValidador.validarObjetoJson(objetoJson, ATRIBUTOS_ATUALIZAVEIS);
 
-        ProdutoDTO produtoDTO = produtoService.atualizar(hash, ProdutoMapeador.mapearParaDTO(objetoJson));
+        ProdutoDTO produtoDTO = produtoService.atualizar(hash, ProdutoMapeador.mapearParaDTO(objetoJson), versaoEsperada);
 
         return new RespostaDTO<Object>("Sucesso", "Produto atualizado com sucesso.", produtoDTO);
     }
 
-    public RespostaDTO<Object> atualizarStatus(String hash, String jsonRequisicao) {
+    public RespostaDTO<Object> atualizarStatus(String hash, String jsonRequisicao, String versaoEsperada) {
         JsonObject objetoJson = mapearParaObjetoJson(jsonRequisicao);
 
         jsonProdutoValidador.validarObjetoJson(objetoJson, ATRIBUTO_STATUS);
 
-        ProdutoDTO produtoDTO = produtoService.atualizarStatusLativo(hash, ProdutoMapeador.mapearParaDTO(objetoJson));
+        ProdutoDTO produtoDTO = produtoService.atualizarStatusLativo(
+                hash, ProdutoMapeador.mapearParaDTO(objetoJson), versaoEsperada);
 
         return new RespostaDTO<Object>("Sucesso", "Produto atualizado com sucesso.", produtoDTO);
     }
 
-    public List<RespostaDTO<Object>> atualizarPrecoLote(String jsonRequisicao) {
-        List<RespostaDTO<Object>> respostasDTO = new ArrayList<>();
+    public void atualizarPrecoLote(Iterator<JsonObject> itens, Consumer<RespostaDTO<Object>> respostas) {
+        executarLote(respostasLote -> processarLote(itens,
+                ATRIBUTOS_OBRIGATORIOS_ATUALIZAR_PRECO_LOTE,
+                ProdutoMapeador::mapearParaAtualizacaoLoteDTO,
+                atualizacao -> Collections.singletonList(atualizacao.getHash()),
+                produtoService::atualizarPrecoEmLote,
+                "Preço atualizado com sucesso.",
+                respostasLote), respostas);
+    }
+
+    public void atualizarEstoqueLote(Iterator<JsonObject> itens, Consumer<RespostaDTO<Object>> respostas) {
+        executarLote(respostasLote -> processarLote(itens,
+                ATRIBUTOS_OBRIGATORIOS_ATUALIZAR_ESTOQUE_LOTE,
+                ProdutoMapeador::mapearParaAtualizacaoLoteDTO,
+                atualizacao -> Collections.singletonList(atualizacao.getHash()),
+                produtoService::atualizarEstoqueEmLote,
+                "Estoque atualizado com sucesso.",
+                respostasLote), respostas);
+    }
 
-        for (JsonObject objetoJson : mapearParaListaDeObjetosJson(jsonRequisicao)) {
-            try {
-                jsonProdutoValidador.validarObjetoJson(objetoJson, ATRIBUTOS_OBRIGATORIOS_ATUALIZAR_PRECO_LOTE);
+    public void deletar(String hash) {
+        produtoService.deletar(hash);
+    }
 
-                ProdutoDTO produtoDTO = produtoService.atualizarPrecoEmLote(mapearParaAtualizacaoLoteDTO(objetoJson));
+    /**
+     * Executa uma operação em lote, entregando as respostas de cada item à medida que ficam prontas.
+     *
+     * Quando "lote.transacao-unica" está habilitado, o lote inteiro usa uma única unidade de trabalho e cada
+     * bloco do serviço roda em um savepoint próprio; nesse caso as respostas só são entregues após a
+     * confirmação, pois uma falha posterior ainda desfaria os itens já processados. Sem transação única,
+     * um erro de leitura no meio do lote encerra o processamento com uma resposta de erro, e os itens
+     * anteriores permanecem gravados.
+     *
+     * @param lote       A operação em lote, que entrega cada resposta ao consumidor recebido.
+     * @param respostas  O consumidor das respostas de cada item, na ordem dos itens recebidos.
+     */
+    private void executarLote(Consumer<Consumer<RespostaDTO<Object>>> lote, Consumer<RespostaDTO<Object>> respostas) {
+        if (loteEmTransacaoUnica) {
+            List<RespostaDTO<Object>> confirmadas = new ArrayList<>();
+            UnidadeDeTrabalho.executar(() -> lote.accept(confirmadas::add));
+            confirmadas.forEach(respostas);
+            return;
+        }
+
+        try {
+            lote.accept(respostas);
+        } catch (IllegalArgumentException e) {
+            respostas.accept(new RespostaDTO<Object>("Erro", e.getMessage()));
+        }
+    }
+
+    /**
+     * Lê os itens do lote em blocos de "lote.tamanho-bloco", valida o JSON de cada item e envia os itens
+     * válidos de cada bloco de uma só vez ao serviço, entregando as respostas na ordem dos itens recebidos.
+     * Apenas um bloco fica em memória por vez.
+     *
+     * Com "lote.paralelismo" maior que 1, cada bloco reúne "lote.paralelismo" vezes mais itens e é dividido
+     * em partições pelas chaves de cada item, processadas em paralelo. Itens que compartilham alguma chave,
+     * direta ou indiretamente, caem na mesma partição e são processados em sequência, na ordem recebida;
+     * assim a verificação de duplicados do serviço enxerga todos eles. A falha de uma partição vira erro apenas
+     * nos seus próprios itens. Em transação única o processamento continua sequencial, pois a transação
+     * pertence à thread da requisição.
+     *
+     * @param itens           Os itens do lote, lidos sob demanda.
+     * @param atributos       Os atributos obrigatórios de cada item.
+     * @param mapeador        A conversão de cada item para o DTO esperado pelo serviço.
+     * @param chaves          As chaves que definem a partição de cada item: o hash, ou o nome e o EAN-13.
+     * @param processamento   A operação em lote do serviço.
+     * @param mensagemSucesso A mensagem das respostas de sucesso.
+     * @param respostas       O consumidor das respostas de cada item.
+     * @param <T>             O tipo do DTO de cada item.
+     * @throws IllegalArgumentException Se o JSON do lote for inválido; os itens lidos antes do erro são
+     *                                  processados e respondidos antes do lançamento.
+     */
+    private <T> void processarLote(Iterator<JsonObject> itens, ProdutoAtributos atributos,
+                                   Function<JsonObject, T> mapeador, Function<T, List<String>> chaves,
+                                   Function<List<T>, List<ResultadoLote<ProdutoDTO>>> processamento,
+                                   String mensagemSucesso, Consumer<RespostaDTO<Object>> respostas) {
+        Function<List<T>, List<ResultadoLote<ProdutoDTO>>> processamentoBloco = executorLote == null || loteEmTransacaoUnica
+                ? processamento
+                : lista -> processarEmParalelo(lista, chaves, processamento);
+        int tamanho = processamentoBloco == processamento ? tamanhoBloco : tamanhoBloco * paralelismo;
+
+        List<JsonObject> bloco = new ArrayList<>(tamanho);
+        IllegalArgumentException erroLeitura = null;
+        try {
+            while (itens.hasNext()) {
+                bloco.add(itens.next());
+                if (bloco.size() == tamanho) {
+                    processarBloco(bloco, atributos, mapeador, processamentoBloco, mensagemSucesso, respostas);
+                    bloco.clear();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            erroLeitura = e;
+        }
+
+        if (!bloco.isEmpty())
+            processarBloco(bloco, atributos, mapeador, processamentoBloco, mensagemSucesso, respostas);
+        if (erroLeitura != null)
+            throw erroLeitura;
+    }
 
-                addRespostaSucesso(produtoDTO, "Preço atualizado com sucesso.", respostasDTO);
-            }catch (IllegalArgumentException | IllegalStateException e){
-                addRespostaErro(objetoJson, e.getMessage(), respostasDTO);
+    private <T> void processarBloco(List<JsonObject> objetosJson, ProdutoAtributos atributos,
+                                    Function<JsonObject, T> mapeador,
+                                    Function<List<T>, List<ResultadoLote<ProdutoDTO>>> processamento,
+                                    String mensagemSucesso, Consumer<RespostaDTO<Object>> respostas) {
+        List<RespostaDTO<Object>> respostasDTO = new ArrayList<>(Collections.nCopies(objetosJson.size(), null));
+        List<T> itens = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+
+        for (int i = 0; i < objetosJson.size(); i++) {
+            JsonObject objetoJson = objetosJson.get(i);
+            try {
+                jsonProdutoValidador.validarObjetoJson(objetoJson, atributos);
+                itens.add(mapeador.apply(objetoJson));
+                indices.add(i);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                respostasDTO.set(i, criarRespostaErro(objetoJson, e.getMessage()));
             }
         }
-        return respostasDTO;
+
+        List<ResultadoLote<ProdutoDTO>> resultados = itens.isEmpty()
+                ? Collections.emptyList() : processamento.apply(itens);
+
+        for (int i = 0; i < resultados.size(); i++) {
+            int indice = indices.get(i);
+            ResultadoLote<ProdutoDTO> resultado = resultados.get(i);
+            respostasDTO.set(indice, resultado.isSucesso()
+                    ? criarRespostaSucesso(resultado.getDado(), mensagemSucesso)
+                    : criarRespostaErro(objetosJson.get(indice), resultado.getMensagemErro()));
+        }
+        respostasDTO.forEach(respostas);
     }
 
-    public List<RespostaDTO<Object>> atualizarEstoqueLote(String jsonRequisicao) {
-        List<RespostaDTO<Object>> respostasDTO = new ArrayList<>();
+    /**
+     * Divide os itens em partições pelas chaves e processa cada partição em uma thread do executor de lotes,
+     * devolvendo os resultados na ordem dos itens recebidos.
+     */
+    private <T> List<ResultadoLote<ProdutoDTO>> processarEmParalelo(List<T> itens, Function<T, List<String>> chaves,
+                                                                    Function<List<T>, List<ResultadoLote<ProdutoDTO>>> processamento) {
+        List<List<Integer>> indicesPorParticao = new ArrayList<>(paralelismo);
+        List<List<T>> particoes = new ArrayList<>(paralelismo);
+        for (int i = 0; i < paralelismo; i++) {
+            indicesPorParticao.add(new ArrayList<>());
+            particoes.add(new ArrayList<>());
+        }
+        int[] particaoDoItem = particionar(itens, chaves);
+        for (int i = 0; i < itens.size(); i++) {
+            indicesPorParticao.get(particaoDoItem[i]).add(i);
+            particoes.get(particaoDoItem[i]).add(itens.get(i));
+        }
 
-        for (JsonObject objetoJson : mapearParaListaDeObjetosJson(jsonRequisicao)) {
+        List<Future<List<ResultadoLote<ProdutoDTO>>>> futuros = new ArrayList<>(paralelismo);
+        for (List<T> particao : particoes)
+            futuros.add(particao.isEmpty() ? null : executorLote.submit(
+                    ConexaoBancoDados.noClienteAtual(() -> processamento.apply(particao))));
+
+        List<ResultadoLote<ProdutoDTO>> resultados = new ArrayList<>(Collections.nCopies(itens.size(), null));
+        for (int p = 0; p < paralelismo; p++) {
+            if (futuros.get(p) == null)
+                continue;
+            List<Integer> indices = indicesPorParticao.get(p);
+            List<ResultadoLote<ProdutoDTO>> resultadosParticao;
             try {
-                jsonProdutoValidador.validarObjetoJson(objetoJson, ATRIBUTOS_OBRIGATORIOS_ATUALIZAR_ESTOQUE_LOTE);
+                resultadosParticao = futuros.get(p).get();
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.SEVERE, "Erro ao processar uma partição do lote de produtos.", e.getCause());
+                resultadosParticao = Collections.nCopies(indices.size(),
+                        ResultadoLote.erro("Não foi possível processar o item do lote."));
+            } catch (InterruptedException e) {
+                futuros.forEach(futuro -> {
+                    if (futuro != null)
+                        futuro.cancel(true);
+                });
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Processamento do lote interrompido.", e);
+            }
+            for (int i = 0; i < indices.size(); i++)
+                resultados.set(indices.get(i), resultadosParticao.get(i));
+        }
+        return resultados;
+    }
 
-                ProdutoDTO produtoDTO = produtoService.atualizarEstoqueEmLote(mapearParaAtualizacaoLoteDTO(objetoJson));
+    /**
+     * Agrupa os itens que compartilham alguma chave, direta ou indiretamente, e distribui os grupos entre as
+     * partições, cada grupo inteiro na partição com menos itens no momento, na ordem em que aparecem.
+     *
+     * @return A partição de cada item, na ordem dos itens.
+     */
+    private <T> int[] particionar(List<T> itens, Function<T, List<String>> chaves) {
+        int[] grupo = new int[itens.size()];
+        Map<String, Integer> primeiroItemDaChave = new HashMap<>();
+        for (int i = 0; i < itens.size(); i++) {
+            grupo[i] = i;
+            for (String chave : chaves.apply(itens.get(i))) {
+                if (chave == null)
+                    continue;
+                Integer anterior = primeiroItemDaChave.putIfAbsent(chave.toLowerCase(Locale.ROOT), i);
+                if (anterior != null)
+                    grupo[raiz(grupo, i)] = raiz(grupo, anterior);
+            }
+        }
 
-                addRespostaSucesso(produtoDTO, "Estoque atualizado com sucesso.", respostasDTO);
-            }catch (IllegalArgumentException | IllegalStateException e){
-                addRespostaErro(objetoJson, e.getMessage(), respostasDTO);
+        int[] tamanhoGrupo = new int[itens.size()];
+        for (int i = 0; i < itens.size(); i++)
+            tamanhoGrupo[raiz(grupo, i)]++;
+
+        int[] particaoDoGrupo = new int[itens.size()];
+        Arrays.fill(particaoDoGrupo, -1);
+        int[] carga = new int[paralelismo];
+        int[] particaoDoItem = new int[itens.size()];
+        for (int i = 0; i < itens.size(); i++) {
+            int raiz = raiz(grupo, i);
+            if (particaoDoGrupo[raiz] < 0) {
+                int menor = 0;
+                for (int p = 1; p < paralelismo; p++)
+                    if (carga[p] < carga[menor])
+                        menor = p;
+                particaoDoGrupo[raiz] = menor;
+                carga[menor] += tamanhoGrupo[raiz];
             }
+            particaoDoItem[i] = particaoDoGrupo[raiz];
         }
-        return respostasDTO;
+        return particaoDoItem;
     }
 
-    public void deletar(String hash) {
-        produtoService.deletar(hash);
+    private static int raiz(int[] grupo, int item) {
+        while (grupo[item] != item) {
+            grupo[item] = grupo[grupo[item]];
+            item = grupo[item];
+        }
+        return item;
     }
 
     private ProdutoDTO salvarProduto(JsonObject objetoJson){
@@ -126,11 +402,11 @@ public class ProdutoController{
         return produtoService.criar(ProdutoMapeador.mapearParaDTO(objetoJson));
     }
 
-    private void addRespostaSucesso(ProdutoDTO produtoDTO, String mensagem, List<RespostaDTO<Object>> respostasDTO){
-        respostasDTO.add(new RespostaDTO<Object>("Sucesso",mensagem, produtoDTO));
+    private RespostaDTO<Object> criarRespostaSucesso(ProdutoDTO produtoDTO, String mensagem){
+        return new RespostaDTO<Object>("Sucesso", mensagem, produtoDTO);
     }
 
-    private void addRespostaErro(JsonObject objetoJson, String mensagem, List<RespostaDTO<Object>> respostasDTO){
-        respostasDTO.add(new RespostaDTO<Object>("Erro", mensagem, objetoJson));
+    private RespostaDTO<Object> criarRespostaErro(JsonObject objetoJson, String mensagem){
+        return new RespostaDTO<Object>("Erro", mensagem, objetoJson);
     }
 }
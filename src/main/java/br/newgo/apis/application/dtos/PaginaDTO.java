@@ -0,0 +1,27 @@
+package br.newgo.apis.application.dtos;
+
+import java.util.List;
+
+/**
+ * Representa uma página de uma listagem paginada por cursor.
+ * O cursor da próxima página é opaco para o cliente e fica ausente quando não há mais itens.
+ *
+ * @param <T> O tipo dos itens da página.
+ */
+public class PaginaDTO<T> {
+    private List<T> itens;
+    private String proximoCursor;
+
+    public PaginaDTO(List<T> itens, String proximoCursor) {
+        this.itens = itens;
+        this.proximoCursor = proximoCursor;
+    }
+
+    public List<T> getItens() {
+        return itens;
+    }
+
+    public String getProximoCursor() {
+        return proximoCursor;
+    }
+}
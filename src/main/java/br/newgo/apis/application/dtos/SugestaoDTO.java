@@ -0,0 +1,22 @@
+package br.newgo.apis.application.dtos;
+
+/**
+ * Representa uma sugestão de autocompletar: apenas o hash e o nome do produto.
+ */
+public class SugestaoDTO {
+    private String hash;
+    private String nome;
+
+    public SugestaoDTO(String hash, String nome) {
+        this.hash = hash;
+        this.nome = nome;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+}
@@ -0,0 +1,158 @@
+package br.newgo.apis.application.listeners;
+
+import br.newgo.apis.infrastructure.ConexaoBancoDados;
+import br.newgo.apis.infrastructure.cache.CacheLimitado;
+import br.newgo.apis.infrastructure.config.ConfigProperties;
+import br.newgo.apis.infrastructure.dao.ProdutoDAO;
+import br.newgo.apis.infrastructure.entities.Produto;
+import br.newgo.apis.infrastructure.migracao.MigradorBancoDados;
+import br.newgo.apis.infrastructure.notificacao.OuvinteAlteracoesProdutos;
+import br.newgo.apis.infrastructure.pool.PoolConexoes;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Controla o ciclo de vida dos recursos compartilhados da aplicação, como o pool de conexões.
+ */
+public class AplicacaoListener implements ServletContextListener {
+    private static final Logger LOGGER = Logger.getLogger(AplicacaoListener.class.getName());
+
+    private ScheduledExecutorService registroMetricas;
+
+    /**
+     * Cria o pool de conexões e aplica as versões pendentes do esquema na inicialização da aplicação,
+     * antes da primeira requisição. A migração pode ser desligada com "db.migracao.habilitada=false".
+     *
+     * Em seguida inicia a escuta das alterações de produtos feitas por outras instâncias, que mantém o
+     * cache de produtos atualizado. A escuta pode ser desligada com "db.notificacao.habilitada=false".
+     * Enquanto a conexão de escuta está fora, os índices e o filtro de duplicados são descartados e as
+     * consultas vão ao banco; após a reconexão, eles são recarregados.
+     *
+     * Por fim, agenda o registro periódico no log das métricas dos pools de conexões, do cache de produtos e
+     * do filtro de duplicados, a cada "metricas.intervalo-log-ms" (0 desliga o registro).
+     *
+     * @param sce O evento de inicialização do contexto.
+     */
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        ConexaoBancoDados.obterPool();
+        if (ConfigProperties.getBoolean("db.migracao.habilitada", true))
+            MigradorBancoDados.migrar();
+
+        ProdutoDAO produtoDAO = new ProdutoDAO();
+        boolean indiceEstoqueBaixo = ConfigProperties.getBoolean("estoque-baixo.indice.habilitado", true);
+        if (indiceEstoqueBaixo)
+            carregarIndiceEstoqueBaixo(produtoDAO);
+        boolean indiceNomes = ConfigProperties.getBoolean("autocompletar.indice.habilitado", true);
+        if (indiceNomes)
+            carregarIndiceNomes(produtoDAO);
+        boolean filtroDuplicados = ConfigProperties.getBoolean("filtro.duplicados.habilitado", true);
+        if (filtroDuplicados)
+            carregarFiltroDuplicados(produtoDAO);
+
+        if (ConfigProperties.getBoolean("db.notificacao.habilitada", true)) {
+            CacheLimitado<UUID, Produto> cache = ProdutoDAO.obterCache();
+            OuvinteAlteracoesProdutos.registrar(cache::invalidar, cache::invalidarTodos);
+            if (indiceEstoqueBaixo || indiceNomes || filtroDuplicados) {
+                OuvinteAlteracoesProdutos.registrarDesconexao(produtoDAO::descartarIndices);
+                OuvinteAlteracoesProdutos.registrar(produtoDAO::sincronizarIndices, () -> {
+                    if (indiceEstoqueBaixo)
+                        carregarIndiceEstoqueBaixo(produtoDAO);
+                    if (indiceNomes)
+                        carregarIndiceNomes(produtoDAO);
+                    if (filtroDuplicados)
+                        carregarFiltroDuplicados(produtoDAO);
+                });
+            }
+            OuvinteAlteracoesProdutos.iniciar();
+        }
+
+        long intervaloMetricasMs = ConfigProperties.getLong("metricas.intervalo-log-ms", 60000);
+        if (intervaloMetricasMs > 0) {
+            registroMetricas = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+                Thread thread = new Thread(tarefa, "registro-metricas");
+                thread.setDaemon(true);
+                return thread;
+            });
+            registroMetricas.scheduleWithFixedDelay(this::registrarMetricas,
+                    intervaloMetricasMs, intervaloMetricasMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Registra no log o estado atual dos pools de conexões, do cache de produtos e do filtro de duplicados.
+     */
+    private void registrarMetricas() {
+        try {
+            LOGGER.info(ConexaoBancoDados.obterPool().toString());
+            for (PoolConexoes replica : ConexaoBancoDados.obterReplicas())
+                LOGGER.info(replica.toString());
+            LOGGER.info(ProdutoDAO.obterCache().toString());
+            if (ProdutoDAO.obterFiltroDuplicados().isCarregado())
+                LOGGER.info(ProdutoDAO.obterFiltroDuplicados().toString());
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Erro ao registrar as métricas.", e);
+        }
+    }
+
+    /**
+     * Carrega o índice de estoque baixo. Em caso de falha, as consultas de estoque baixo continuam
+     * sendo respondidas pelo banco.
+     *
+     * @param produtoDAO O DAO utilizado na carga.
+     */
+    private void carregarIndiceEstoqueBaixo(ProdutoDAO produtoDAO) {
+        try {
+            produtoDAO.carregarIndiceEstoqueBaixo();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Erro ao carregar o índice de estoque baixo; utilizando o banco.", e);
+        }
+    }
+
+    /**
+     * Carrega o índice de nomes do autocompletar. Em caso de falha, o autocompletar consulta o banco.
+     *
+     * @param produtoDAO O DAO utilizado na carga.
+     */
+    private void carregarIndiceNomes(ProdutoDAO produtoDAO) {
+        try {
+            produtoDAO.carregarIndiceNomes();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Erro ao carregar o índice de nomes; utilizando o banco.", e);
+        }
+    }
+
+    /**
+     * Carrega o filtro de duplicados. Em caso de falha, a verificação de duplicados consulta sempre o banco.
+     *
+     * @param produtoDAO O DAO utilizado na carga.
+     */
+    private void carregarFiltroDuplicados(ProdutoDAO produtoDAO) {
+        try {
+            produtoDAO.carregarFiltroDuplicados();
+            LOGGER.info(ProdutoDAO.obterFiltroDuplicados().toString());
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Erro ao carregar o filtro de duplicados; utilizando o banco.", e);
+        }
+    }
+
+    /**
+     * Libera os recursos compartilhados quando a aplicação é encerrada.
+     *
+     * @param sce O evento de encerramento do contexto.
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        if (registroMetricas != null)
+            registroMetricas.shutdownNow();
+        OuvinteAlteracoesProdutos.encerrar();
+        ConexaoBancoDados.encerrar();
+    }
+}
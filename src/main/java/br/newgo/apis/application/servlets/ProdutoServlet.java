@@ -1,22 +1,70 @@
 package br.newgo.apis.application.servlets;
 
 import br.newgo.apis.application.controller.ProdutoController;
+import br.newgo.apis.application.dtos.ProdutoDTO;
 import br.newgo.apis.application.dtos.RespostaDTO;
+import br.newgo.apis.application.utils.EtagUtils;
+import br.newgo.apis.application.utils.LeitorLoteJson;
 import br.newgo.apis.application.utils.RequestUtils;
 import br.newgo.apis.application.utils.ResponseUtils;
+import br.newgo.apis.domain.services.ConflitoVersaoException;
+import br.newgo.apis.infrastructure.ConexaoBancoDados;
+import br.newgo.apis.infrastructure.config.ConfigProperties;
+import br.newgo.apis.infrastructure.pool.ExecutorBancoDados;
+import br.newgo.apis.infrastructure.pool.PoolEsgotadoException;
+import com.google.gson.JsonObject;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import static br.newgo.apis.application.utils.JsonMapeador.mapearListaParaJson;
-import static br.newgo.apis.application.utils.JsonMapeador.mapearParaJson;
 
+/**
+ * Servlet da API de produtos.
+ *
+ * As requisições são atendidas em modo assíncrono: a thread do Tomcat apenas inicia o AsyncContext e
+ * entrega o atendimento ao {@link ExecutorBancoDados}, cujo tamanho acompanha o pool de conexões. Assim,
+ * quando o banco fica lento, as requisições aguardam na fila do executor sem prender as threads do conector.
+ *
+ * O AsyncContext não tem tempo limite no contêiner: uma vez iniciada, a tarefa é a única dona da resposta.
+ * O tempo de execução é limitado no banco, pelo "db.pool.statement-timeout-ms", que cancela a instrução em
+ * andamento. A fila cheia, a espera na fila além do limite, o pool de conexões esgotado e a instrução
+ * cancelada por tempo limite são respondidos com 503 Service Unavailable.
+ *
+ * A janela de leitura após escrita é de cada cliente: as respostas de requisições que confirmaram escritas
+ * devolvem o cookie e o cabeçalho "ultima-escrita" com o instante da última confirmação, e as requisições
+ * seguintes que o reenviam dentro da janela leem do banco principal em vez de uma réplica. Um lote transmitido
+ * só informa as confirmações anteriores ao envio do início da resposta; o cliente que precisar ler as
+ * alterações dos blocos seguintes deve enviar no cabeçalho "ultima-escrita" o instante em que recebeu o fim
+ * da resposta.
+ */
 public class ProdutoServlet extends HttpServlet {
+    private static final Logger LOGGER = Logger.getLogger(ProdutoServlet.class.getName());
+    private static final String SQLSTATE_CANCELADA = "57014";
+    private static final String ULTIMA_ESCRITA = "ultima-escrita";
+    private static final int PENDENTE = 0;
+    private static final int EXECUTANDO = 1;
+    private static final int CONCLUIDA = 2;
+
     private ProdutoController produtoController;
+    private ExecutorBancoDados executorBancoDados;
+    private String cacheControlListagem;
 
     /**
      * Inicializa o servlet e cria uma instância do serviço de produtos.
@@ -30,63 +78,274 @@ public class ProdutoServlet extends HttpServlet {
             throw new RuntimeException("Erro ao inicializar o servlet: " + e.getMessage(), e);
         }
         produtoController = new ProdutoController();
+        executorBancoDados = new ExecutorBancoDados();
+        cacheControlListagem = "public, max-age=" + ConfigProperties.getLong("http.listagem.max-age", 0) +
+                ", stale-while-revalidate=" + ConfigProperties.getLong("http.listagem.stale-while-revalidate", 30);
+    }
+
+    @Override
+    public void destroy() {
+        executorBancoDados.encerrar();
+        produtoController.encerrar();
+        super.destroy();
+    }
+
+    /**
+     * Inicia o atendimento assíncrono da requisição e o entrega ao executor do banco de dados, que chama o
+     * método doGet, doPost, doPut ou doDelete correspondente.
+     *
+     * A requisição é concluída por exatamente um dos caminhos: a tarefa no executor, a expiração na fila ou
+     * a recusa pela fila cheia. Enquanto a tarefa executa, somente ela escreve na resposta. Se o contêiner
+     * sinalizar um erro na conexão, ele mesmo conclui a requisição e a tarefa deixa de concluí-la.
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) {
+        AsyncContext contexto = req.startAsync();
+        contexto.setTimeout(0);
+        AtomicInteger estado = new AtomicInteger(PENDENTE);
+
+        contexto.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent evento) {
+            }
+
+            @Override
+            public void onError(AsyncEvent evento) {
+                estado.set(CONCLUIDA);
+            }
+
+            @Override
+            public void onComplete(AsyncEvent evento) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent evento) {
+            }
+        });
+
+        Runnable expirar = () -> {
+            if (!estado.compareAndSet(PENDENTE, CONCLUIDA))
+                return;
+            responderSeNaoEnviada(req, resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    "Servidor ocupado: tempo de espera na fila excedido.");
+            contexto.complete();
+        };
+
+        try {
+            executorBancoDados.executar(() -> atender(contexto, estado, req, resp), expirar);
+        } catch (PoolEsgotadoException e) {
+            estado.set(CONCLUIDA);
+            responderSeNaoEnviada(req, resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+            contexto.complete();
+        }
+    }
+
+    private void atender(AsyncContext contexto, AtomicInteger estado, HttpServletRequest req, HttpServletResponse resp) {
+        if (!estado.compareAndSet(PENDENTE, EXECUTANDO))
+            return;
+        try {
+            iniciarCliente(req, resp);
+            super.service(req, resp);
+        } catch (PoolEsgotadoException e) {
+            if (estado.get() == EXECUTANDO)
+                responderSeNaoEnviada(req, resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+        } catch (ServletException | IOException | RuntimeException e) {
+            if (estado.get() != EXECUTANDO)
+                return;
+            if (isCanceladaPorTempoLimite(e)) {
+                responderSeNaoEnviada(req, resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                        "Tempo limite de processamento da requisição excedido.");
+            } else {
+                LOGGER.log(Level.SEVERE, "Erro ao atender " + req.getMethod() + " " + req.getRequestURI() + ".", e);
+                responderSeNaoEnviada(req, resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                        "Erro interno do servidor.");
+            }
+        } finally {
+            ConexaoBancoDados.encerrarCliente();
+            if (estado.compareAndSet(EXECUTANDO, CONCLUIDA))
+                contexto.complete();
+        }
+    }
+
+    /**
+     * Associa a thread ao cliente pela última escrita que ele reenviou. Cada escrita confirmada durante o
+     * atendimento atualiza o cookie e o cabeçalho "ultima-escrita" da resposta, enquanto ela não foi enviada,
+     * de modo que a janela devolvida começa na última confirmação.
+     */
+    private void iniciarCliente(HttpServletRequest req, HttpServletResponse resp) {
+        String caminho = req.getContextPath().isEmpty() ? "/" : req.getContextPath();
+        ConexaoBancoDados.iniciarCliente(lerUltimaEscrita(req), escrita -> {
+            if (resp.isCommitted())
+                return;
+            long maxAge = Math.max(1, (ConexaoBancoDados.getJanelaLeituraAposEscritaMs() + 999) / 1000);
+            // setHeader, e não addCookie, para que a última confirmação substitua as anteriores.
+            resp.setHeader("Set-Cookie", ULTIMA_ESCRITA + "=" + escrita + "; Max-Age=" + maxAge +
+                    "; Path=" + caminho + "; HttpOnly");
+            resp.setHeader(ULTIMA_ESCRITA, Long.toString(escrita));
+        });
+    }
+
+    private static long lerUltimaEscrita(HttpServletRequest req) {
+        String valor = req.getHeader(ULTIMA_ESCRITA);
+        if (valor == null && req.getCookies() != null)
+            for (Cookie cookie : req.getCookies())
+                if (ULTIMA_ESCRITA.equals(cookie.getName()))
+                    valor = cookie.getValue();
+        try {
+            return valor == null ? 0 : Long.parseLong(valor.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Indica se a exceção foi causada por uma instrução cancelada pelo "statement_timeout" do banco.
+     */
+    private static boolean isCanceladaPorTempoLimite(Throwable erro) {
+        for (Throwable causa = erro; causa != null; causa = causa.getCause())
+            if (causa instanceof SQLException && SQLSTATE_CANCELADA.equals(((SQLException) causa).getSQLState()))
+                return true;
+        return false;
+    }
+
+    /**
+     * Escreve a mensagem de erro com o status informado, se nada da resposta tiver sido enviado ainda.
+     */
+    private void responderSeNaoEnviada(HttpServletRequest req, HttpServletResponse resp, int status, String mensagem) {
+        try {
+            if (resp.isCommitted())
+                return;
+            resp.reset();
+            resp.setStatus(status);
+            ResponseUtils.escreverJson(req, resp, mensagem);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Erro ao escrever a resposta de erro " + status + ".", e);
+        }
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
         try {
             String pathInfo = req.getPathInfo();
-            String jsonResposta = "";
+            Object resposta = null;
+            Consumer<Consumer<ProdutoDTO>> listagem = null;
+            LongConsumer versao = numero -> resp.setHeader("ETag", EtagUtils.gerarCatalogo(numero));
 
-            if (req.getParameter("estoque-baixo") != null)
-                jsonResposta = mapearParaJson(produtoController.obterTodosComEstoqueBaixo());
+            String cursor = req.getParameter("cursor");
+            String limite = req.getParameter("limite");
+            boolean paginado = cursor != null || limite != null;
 
-            else if (pathInfo == null || pathInfo.equals("/"))
-                jsonResposta = mapearParaJson(produtoController.obterTodos());
+            if (req.getParameter("estoque-baixo") != null) {
+                if (paginado)
+                    resposta = produtoController.obterPaginaComEstoqueBaixo(cursor, limite);
+                else
+                    listagem = produtoController::obterTodosComEstoqueBaixo;
+            }
+
+            else if (pathInfo == null || pathInfo.equals("/")) {
+                if (paginado)
+                    resposta = produtoController.obterPagina(cursor, limite);
+                else
+                    listagem = consumidor -> produtoController.obterTodos(versao, consumidor);
+            }
 
-            else if (pathInfo.equalsIgnoreCase("/ativos") || pathInfo.equalsIgnoreCase("/ativos/"))
-                jsonResposta = mapearParaJson(produtoController.obterTodosPorStatus("true"));
+            else if (pathInfo.equalsIgnoreCase("/busca") || pathInfo.equalsIgnoreCase("/busca/"))
+                resposta = produtoController.buscar(req.getParameter("q"), cursor, limite);
 
-            else if (pathInfo.equalsIgnoreCase("/inativos") || pathInfo.equalsIgnoreCase("/inativos/"))
-                jsonResposta = mapearParaJson(produtoController.obterTodosPorStatus("false"));
+            else if (pathInfo.equalsIgnoreCase("/autocomplete") || pathInfo.equalsIgnoreCase("/autocomplete/"))
+                resposta = produtoController.autocompletar(req.getParameter("prefixo"), limite);
+
+            else if (pathInfo.equalsIgnoreCase("/ativos") || pathInfo.equalsIgnoreCase("/ativos/")) {
+                if (paginado)
+                    resposta = produtoController.obterPaginaPorStatus("true", cursor, limite);
+                else
+                    listagem = consumidor -> produtoController.obterTodosPorStatus("true", versao, consumidor);
+            }
+
+            else if (pathInfo.equalsIgnoreCase("/inativos") || pathInfo.equalsIgnoreCase("/inativos/")) {
+                if (paginado)
+                    resposta = produtoController.obterPaginaPorStatus("false", cursor, limite);
+                else
+                    listagem = consumidor -> produtoController.obterTodosPorStatus("false", versao, consumidor);
+            }
 
             else {
                 String[] pathParts = pathInfo.split("/");
+                ProdutoDTO produtoDTO = null;
 
                 if (pathParts.length == 3 && pathParts[2].equalsIgnoreCase("ativo"))
-                    jsonResposta = mapearParaJson(produtoController.obterDtoAtivoPorHash(pathParts[1]));
+                    produtoDTO = produtoController.obterDtoAtivoPorHash(pathParts[1]);
 
                 else if (pathParts.length == 2)
-                    jsonResposta = mapearParaJson(produtoController.obterDtoPorHash(pathParts[1]));
+                    produtoDTO = produtoController.obterDtoPorHash(pathParts[1]);
+
+                if (produtoDTO != null) {
+                    String etag = EtagUtils.gerar(produtoDTO);
+                    resp.setHeader("ETag", etag);
+                    if (EtagUtils.corresponde(req.getHeader("If-None-Match"), etag, true)) {
+                        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                        return;
+                    }
+                    resposta = produtoDTO;
+                }
             }
-            ResponseUtils.escreverJson(resp, jsonResposta);
+            if (listagem != null && req.getParameter("estoque-baixo") == null && !validarListagemModificada(req, resp))
+                return;
+
+            if (listagem != null)
+                ResponseUtils.escreverListaJson(req, resp, ProdutoDTO.class, listagem);
+            else if (resposta != null)
+                ResponseUtils.escreverObjetoJson(req, resp, resposta);
+            else
+                ResponseUtils.escreverJson(req, resp, "");
         } catch (IllegalArgumentException | IllegalStateException e){
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            ResponseUtils.escreverJson(resp, e.getMessage());
+            ResponseUtils.escreverJson(req, resp, e.getMessage());
         }
     }
+    /**
+     * Prepara a resposta de uma listagem versionada pelo catálogo: define o Cache-Control e, se a requisição
+     * trouxer If-None-Match, compara-o com a versão atual do catálogo sem executar a listagem.
+     *
+     * @return false se a resposta já foi concluída com 304 Not Modified.
+     */
+    private boolean validarListagemModificada(HttpServletRequest req, HttpServletResponse resp) {
+        resp.setHeader("Cache-Control", cacheControlListagem);
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch == null)
+            return true;
+
+        String etag = EtagUtils.gerarCatalogo(produtoController.obterVersaoCatalogo());
+        if (!EtagUtils.corresponde(ifNoneMatch, etag, true))
+            return true;
+
+        resp.setHeader("ETag", etag);
+        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return false;
+    }
+
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) {
         try {
             String pathInfo = req.getPathInfo();
-            String jsonRequisicao = RequestUtils.lerCorpoDaRequisicao(req);
+
+            if (pathInfo != null && (pathInfo.equalsIgnoreCase("/lote") || pathInfo.equalsIgnoreCase("/lote/"))) {
+                escreverLote(req, resp, HttpServletResponse.SC_CREATED, produtoController::criarLote);
+                return;
+            }
 
             List<RespostaDTO<Object>> respostaDTOS = new ArrayList<>();
 
             if (pathInfo == null || pathInfo.equals("/"))
-                respostaDTOS.add(produtoController.criar(jsonRequisicao));
-            else if (pathInfo.equalsIgnoreCase("/lote") || pathInfo.equalsIgnoreCase("/lote/"))
-                respostaDTOS = produtoController.criarLote(jsonRequisicao);
+                respostaDTOS.add(produtoController.criar(RequestUtils.lerCorpoDaRequisicao(req)));
 
             resp.setStatus(HttpServletResponse.SC_CREATED);
             resp.setHeader("Location",
                     RequestUtils.gerarLocationHeader(req, respostaDTOS));
 
-            ResponseUtils.escreverJson(resp,
-                    mapearListaParaJson(respostaDTOS));
+            ResponseUtils.escreverObjetoJson(req, resp, respostaDTOS);
         } catch (IllegalArgumentException | IllegalStateException e){
-            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            ResponseUtils.escreverJson(resp, e.getMessage());
+            escreverErro(req, resp, HttpServletResponse.SC_BAD_REQUEST, e);
         }
     }
 
@@ -94,30 +353,72 @@ public class ProdutoServlet extends HttpServlet {
     protected void doPut(HttpServletRequest req, HttpServletResponse resp) {
         try {
             String[] pathParts = req.getPathInfo().split("/");
-            String jsonRequisicao = RequestUtils.lerCorpoDaRequisicao(req);
 
-            List<RespostaDTO<Object>> respostaDTOS = new ArrayList<>();
+            if (pathParts.length == 2 && pathParts[1].equalsIgnoreCase("atualizar-preco-lote")) {
+                escreverLote(req, resp, HttpServletResponse.SC_OK, produtoController::atualizarPrecoLote);
+                return;
+            }
 
-            if (pathParts.length == 2 && pathParts[1].equalsIgnoreCase("atualizar-preco-lote"))
-                respostaDTOS = produtoController.atualizarPrecoLote(jsonRequisicao);
+            if (pathParts.length == 2 && pathParts[1].equalsIgnoreCase("atualizar-estoque-lote")) {
+                escreverLote(req, resp, HttpServletResponse.SC_OK, produtoController::atualizarEstoqueLote);
+                return;
+            }
 
-            else if (pathParts.length == 2 && pathParts[1].equalsIgnoreCase("atualizar-estoque-lote"))
-                respostaDTOS = produtoController.atualizarEstoqueLote(jsonRequisicao);
+            String jsonRequisicao = RequestUtils.lerCorpoDaRequisicao(req);
+
+            List<RespostaDTO<Object>> respostaDTOS = new ArrayList<>();
 
-            else if (pathParts.length == 2)
-                respostaDTOS.add(produtoController.atualizar(pathParts[1], jsonRequisicao));
+            if (pathParts.length == 2)
+                respostaDTOS.add(produtoController.atualizar(pathParts[1], jsonRequisicao, req.getHeader("If-Match")));
 
             else if (pathParts.length == 3 && pathParts[2].equalsIgnoreCase("status"))
-                respostaDTOS.add(produtoController.atualizarStatus(pathParts[1], jsonRequisicao));
+                respostaDTOS.add(produtoController.atualizarStatus(pathParts[1], jsonRequisicao, req.getHeader("If-Match")));
 
-            ResponseUtils.escreverJson(resp,
-                    mapearListaParaJson(respostaDTOS));
+            if (respostaDTOS.size() == 1 && respostaDTOS.get(0).getDado() instanceof ProdutoDTO)
+                resp.setHeader("ETag", EtagUtils.gerar((ProdutoDTO) respostaDTOS.get(0).getDado()));
+
+            ResponseUtils.escreverObjetoJson(req, resp, respostaDTOS);
+        } catch (ConflitoVersaoException e){
+            escreverErro(req, resp, HttpServletResponse.SC_PRECONDITION_FAILED, e);
         } catch (IllegalArgumentException | IllegalStateException e){
-            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            ResponseUtils.escreverJson(resp, e.getMessage());
+            escreverErro(req, resp, HttpServletResponse.SC_BAD_REQUEST, e);
         }
     }
 
+    /**
+     * Processa um lote lido incrementalmente do corpo da requisição e transmite a resposta de cada item à
+     * medida que fica pronta, sem Content-Length, como lista JSON ou, se o lote foi enviado como NDJSON,
+     * também como NDJSON. Por isso a resposta do lote não inclui o cabeçalho Location.
+     *
+     * @param req        A requisição com o lote.
+     * @param resp       A resposta na qual os itens serão escritos.
+     * @param status     O status HTTP da resposta.
+     * @param operacao   A operação do controlador que processa os itens e entrega as respostas.
+     */
+    private void escreverLote(HttpServletRequest req, HttpServletResponse resp, int status,
+                              BiConsumer<Iterator<JsonObject>, Consumer<RespostaDTO<Object>>> operacao) {
+        try (LeitorLoteJson itens = RequestUtils.abrirLoteJson(req)) {
+            resp.setStatus(status);
+            Consumer<Consumer<RespostaDTO<Object>>> fonte = respostas -> operacao.accept(itens, respostas);
+            if (RequestUtils.isNdjson(req))
+                ResponseUtils.escreverListaNdjson(req, resp, RespostaDTO.class, fonte);
+            else
+                ResponseUtils.escreverListaJson(req, resp, RespostaDTO.class, fonte);
+        }
+    }
+
+    /**
+     * Escreve a mensagem de erro com o status informado, se a resposta ainda não tiver sido enviada.
+     * Depois que um lote começou a ser transmitido, o status já não pode ser alterado e o erro é relançado.
+     */
+    private void escreverErro(HttpServletRequest req, HttpServletResponse resp, int status, RuntimeException e) {
+        if (resp.isCommitted())
+            throw e;
+        resp.reset();
+        resp.setStatus(status);
+        ResponseUtils.escreverJson(req, resp, e.getMessage());
+    }
+
     /**
      * Lida com solicitações HTTP DELETE para deletar um produto.
      *
@@ -134,7 +435,7 @@ public class ProdutoServlet extends HttpServlet {
             resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
         } catch (IllegalArgumentException | IllegalStateException e){
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            ResponseUtils.escreverJson(resp, e.getMessage());
+            ResponseUtils.escreverJson(req, resp, e.getMessage());
         }
     }
 }
\ No newline at end of file
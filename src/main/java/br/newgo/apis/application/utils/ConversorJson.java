@@ -0,0 +1,240 @@
+package br.newgo.apis.application.utils;
+
+import br.newgo.apis.application.dtos.AtualizacaoLoteProdutoDTO;
+import br.newgo.apis.application.dtos.ProdutoDTO;
+import br.newgo.apis.application.dtos.RespostaDTO;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.UUID;
+
+/**
+ * Fornece a instância de Gson compartilhada pela aplicação.
+ *
+ * Gson é seguro para uso concorrente, e reaproveitar a mesma instância evita recriar o cache de adaptadores a
+ * cada conversão. Os DTOs de produto, de resposta e de atualização em lote, além de LocalDateTime, têm
+ * adaptadores escritos à mão, que leem e escrevem os campos diretamente, sem reflexão.
+ *
+ * O JSON produzido é o mesmo da serialização reflexiva anterior: campos nulos são omitidos e LocalDateTime
+ * mantém o formato {"date":{"year","month","day"},"time":{"hour","minute","second","nano"}}. Na leitura,
+ * números e booleanos informados como texto continuam aceitos, e campos desconhecidos são ignorados.
+ */
+public class ConversorJson {
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(LocalDateTime.class, new AdaptadorLocalDateTime().nullSafe())
+            .registerTypeAdapter(ProdutoDTO.class, new AdaptadorProdutoDTO().nullSafe())
+            .registerTypeAdapter(AtualizacaoLoteProdutoDTO.class, new AdaptadorAtualizacaoLote().nullSafe())
+            .registerTypeAdapterFactory(new FabricaAdaptadorResposta())
+            .create();
+
+    /**
+     * Obtém a instância de Gson compartilhada.
+     *
+     * @return A instância de Gson com os adaptadores da aplicação.
+     */
+    public static Gson obter() {
+        return GSON;
+    }
+
+    private static class AdaptadorLocalDateTime extends TypeAdapter<LocalDateTime> {
+        @Override
+        public void write(JsonWriter out, LocalDateTime valor) throws IOException {
+            out.beginObject();
+            out.name("date").beginObject()
+                    .name("year").value(valor.getYear())
+                    .name("month").value(valor.getMonthValue())
+                    .name("day").value(valor.getDayOfMonth())
+                    .endObject();
+            out.name("time").beginObject()
+                    .name("hour").value(valor.getHour())
+                    .name("minute").value(valor.getMinute())
+                    .name("second").value(valor.getSecond())
+                    .name("nano").value(valor.getNano())
+                    .endObject();
+            out.endObject();
+        }
+
+        @Override
+        public LocalDateTime read(JsonReader in) throws IOException {
+            int ano = 0, mes = 1, dia = 1, hora = 0, minuto = 0, segundo = 0, nano = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                String parte = in.nextName();
+                if (in.peek() == JsonToken.NULL || !(parte.equals("date") || parte.equals("time"))) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "year": ano = in.nextInt(); break;
+                        case "month": mes = in.nextInt(); break;
+                        case "day": dia = in.nextInt(); break;
+                        case "hour": hora = in.nextInt(); break;
+                        case "minute": minuto = in.nextInt(); break;
+                        case "second": segundo = in.nextInt(); break;
+                        case "nano": nano = in.nextInt(); break;
+                        default: in.skipValue();
+                    }
+                }
+                in.endObject();
+            }
+            in.endObject();
+            return LocalDateTime.of(LocalDate.of(ano, mes, dia), LocalTime.of(hora, minuto, segundo, nano));
+        }
+    }
+
+    private static class AdaptadorProdutoDTO extends TypeAdapter<ProdutoDTO> {
+        private final TypeAdapter<LocalDateTime> datas = new AdaptadorLocalDateTime().nullSafe();
+
+        @Override
+        public void write(JsonWriter out, ProdutoDTO produto) throws IOException {
+            out.beginObject();
+            if (produto.getHash() != null)
+                out.name("hash").value(produto.getHash().toString());
+            escreverTexto(out, "nome", produto.getNome());
+            escreverTexto(out, "descricao", produto.getDescricao());
+            escreverTexto(out, "ean13", produto.getEan13());
+            out.name("preco").value(produto.getPreco());
+            out.name("quantidade").value(produto.getQuantidade());
+            out.name("estoqueMin").value(produto.getEstoqueMin());
+            if (produto.getDtCreate() != null)
+                datas.write(out.name("dtCreate"), produto.getDtCreate());
+            if (produto.getDtUpdate() != null)
+                datas.write(out.name("dtUpdate"), produto.getDtUpdate());
+            escreverTexto(out, "lativo", produto.getLativo());
+            out.endObject();
+        }
+
+        @Override
+        public ProdutoDTO read(JsonReader in) throws IOException {
+            UUID hash = null;
+            String nome = null, descricao = null, ean13 = null, lativo = null;
+            double preco = 0, quantidade = 0, estoqueMin = 0;
+            LocalDateTime dtCreate = null, dtUpdate = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "hash":
+                        String texto = lerTexto(in);
+                        hash = texto == null ? null : UUID.fromString(texto);
+                        break;
+                    case "nome": nome = lerTexto(in); break;
+                    case "descricao": descricao = lerTexto(in); break;
+                    case "ean13": ean13 = lerTexto(in); break;
+                    case "preco": preco = lerDouble(in); break;
+                    case "quantidade": quantidade = lerDouble(in); break;
+                    case "estoqueMin": estoqueMin = lerDouble(in); break;
+                    case "dtCreate": dtCreate = datas.read(in); break;
+                    case "dtUpdate": dtUpdate = datas.read(in); break;
+                    case "lativo": lativo = lerTexto(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ProdutoDTO(hash, nome, descricao, ean13, preco, quantidade, estoqueMin, dtCreate, dtUpdate, lativo);
+        }
+    }
+
+    private static class AdaptadorAtualizacaoLote extends TypeAdapter<AtualizacaoLoteProdutoDTO> {
+        @Override
+        public void write(JsonWriter out, AtualizacaoLoteProdutoDTO atualizacao) throws IOException {
+            out.beginObject();
+            escreverTexto(out, "hash", atualizacao.getHash());
+            escreverTexto(out, "operacao", atualizacao.getOperacao());
+            out.name("valor").value(atualizacao.getValor());
+            out.endObject();
+        }
+
+        @Override
+        public AtualizacaoLoteProdutoDTO read(JsonReader in) throws IOException {
+            String hash = null, operacao = null;
+            double valor = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "hash": hash = lerTexto(in); break;
+                    case "operacao": operacao = lerTexto(in); break;
+                    case "valor": valor = lerDouble(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return new AtualizacaoLoteProdutoDTO(hash, operacao, valor);
+        }
+    }
+
+    /**
+     * Cria o adaptador de RespostaDTO. O campo "dado" é escrito com o adaptador do seu tipo em tempo de
+     * execução, obtido da própria instância de Gson.
+     */
+    private static class FabricaAdaptadorResposta implements TypeAdapterFactory {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> tipo) {
+            if (tipo.getRawType() != RespostaDTO.class)
+                return null;
+
+            return (TypeAdapter<T>) new TypeAdapter<RespostaDTO<?>>() {
+                @Override
+                public void write(JsonWriter out, RespostaDTO<?> resposta) throws IOException {
+                    if (resposta == null) {
+                        out.nullValue();
+                        return;
+                    }
+                    out.beginObject();
+                    escreverTexto(out, "status", resposta.getStatus());
+                    escreverTexto(out, "messagem", resposta.getMessagem());
+                    Object dado = resposta.getDado();
+                    if (dado != null) {
+                        out.name("dado");
+                        gson.toJson(dado, dado.getClass(), out);
+                    }
+                    out.endObject();
+                }
+
+                @Override
+                public RespostaDTO<?> read(JsonReader in) {
+                    throw new UnsupportedOperationException("RespostaDTO é apenas escrita.");
+                }
+            };
+        }
+    }
+
+    private static void escreverTexto(JsonWriter out, String nome, String valor) throws IOException {
+        if (valor != null)
+            out.name(nome).value(valor);
+    }
+
+    private static String lerTexto(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BOOLEAN:
+                return Boolean.toString(in.nextBoolean());
+            default:
+                return in.nextString();
+        }
+    }
+
+    private static double lerDouble(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        return in.nextDouble();
+    }
+}
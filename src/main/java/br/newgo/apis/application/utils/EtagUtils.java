@@ -0,0 +1,68 @@
+package br.newgo.apis.application.utils;
+
+import br.newgo.apis.application.dtos.ProdutoDTO;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Classe utilitária para gerar e comparar ETags de produtos e do catálogo.
+ *
+ * A ETag de um produto é forte e formada pelo hash do produto e pelo instante da sua última alteração
+ * (ou da criação, se ele nunca foi alterado), em microssegundos, a mesma precisão gravada no banco.
+ * Toda escrita em um produto atualiza "dtupdate", portanto a ETag muda a cada nova versão.
+ *
+ * A ETag das listagens é formada pela versão do catálogo, incrementada pelo banco a cada escrita em produtos.
+ */
+public class EtagUtils {
+
+    /**
+     * Gera a ETag da versão atual do produto.
+     *
+     * @param produtoDTO O produto.
+     * @return A ETag, entre aspas.
+     */
+    public static String gerar(ProdutoDTO produtoDTO) {
+        LocalDateTime versao = produtoDTO.getDtUpdate() != null ? produtoDTO.getDtUpdate() : produtoDTO.getDtCreate();
+        long micros = versao.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + versao.getNano() / 1_000;
+        return "\"" + produtoDTO.getHash() + "-" + Long.toHexString(micros) + "\"";
+    }
+
+    /**
+     * Gera a ETag de uma listagem a partir da versão do catálogo.
+     *
+     * @param versao A versão do catálogo.
+     * @return A ETag, entre aspas.
+     */
+    public static String gerarCatalogo(long versao) {
+        return "\"catalogo-" + versao + "\"";
+    }
+
+    /**
+     * Verifica se a ETag corresponde a alguma das ETags de um cabeçalho If-None-Match ou If-Match.
+     *
+     * @param cabecalho O valor do cabeçalho, com uma ou mais ETags separadas por vírgula, ou "*".
+     * @param etag      A ETag atual do recurso.
+     * @param fraca     true para a comparação fraca (If-None-Match), que ignora o prefixo "W/";
+     *                  false para a comparação forte (If-Match).
+     * @return true se houver correspondência.
+     */
+    public static boolean corresponde(String cabecalho, String etag, boolean fraca) {
+        if (cabecalho == null)
+            return false;
+
+        for (String candidata : cabecalho.split(",")) {
+            String valor = candidata.trim();
+            if (valor.equals("*"))
+                return true;
+            if (valor.startsWith("W/")) {
+                if (!fraca)
+                    continue;
+                valor = valor.substring(2);
+            }
+            if (valor.equals(etag))
+                return true;
+        }
+        return false;
+    }
+}
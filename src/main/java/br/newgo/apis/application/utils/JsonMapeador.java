@@ -1,18 +1,11 @@
 package br.newgo.apis.application.utils;
 
-import br.newgo.apis.application.dtos.ProdutoDTO;
-import br.newgo.apis.application.dtos.RespostaDTO;
-import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 /**
- * Esta classe fornece métodos para mapear strings JSON em elementos JSON e objetos JSON,
- * bem como para criar streams de objetos JSON a partir de strings JSON.
+ * Esta classe fornece métodos para mapear strings JSON em elementos JSON e objetos JSON.
  */
 public class JsonMapeador {
 
@@ -45,29 +38,4 @@ public class JsonMapeador {
     public static JsonObject mapearParaObjetoJson(String json) {
         return mapearParaElementoJson(json).getAsJsonObject();
     }
-
-    public static List<JsonObject> mapearParaListaDeObjetosJson(String json) {
-        JsonElement jsonProdutos = mapearParaElementoJson(json);
-
-        if (jsonProdutos.isJsonArray())
-            return jsonProdutos.getAsJsonArray()
-                    .asList()
-                    .stream()
-                    .map(JsonElement::getAsJsonObject)
-                    .collect(Collectors.toList());
-
-        throw new IllegalArgumentException("Não foi possível obter JSON de produtos em lote");
-    }
-
-    public static String mapearListaParaJson(List<RespostaDTO<Object>> respostas){
-        return new Gson().toJson(respostas);
-    }
-
-    public static String mapearParaJson(ProdutoDTO produtoDTO){
-        return new Gson().toJson(produtoDTO);
-    }
-
-    public static String mapearParaJson(List<ProdutoDTO> produtoDTO){
-        return new Gson().toJson(produtoDTO);
-    }
 }
@@ -0,0 +1,112 @@
+package br.newgo.apis.application.utils;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.ZipException;
+
+/**
+ * Lê os itens de um lote JSON um a um, diretamente do corpo da requisição.
+ *
+ * São aceitos dois formatos: uma lista JSON de objetos ou NDJSON, com um objeto por linha. Apenas o item
+ * corrente é mantido em memória, de modo que o consumo não depende do tamanho do lote.
+ */
+public class LeitorLoteJson implements Iterator<JsonObject>, Closeable {
+    private final JsonReader leitor;
+    private final boolean lista;
+    private boolean terminado;
+
+    /**
+     * Cria o leitor e verifica o início do lote.
+     *
+     * @param corpo O corpo da requisição, já descomprimido.
+     * @throws IllegalArgumentException Se o corpo não começar com uma lista ou um objeto JSON.
+     * @throws RuntimeException         Se ocorrer um erro ao ler o corpo da requisição.
+     */
+    public LeitorLoteJson(Reader corpo) {
+        leitor = new JsonReader(corpo);
+        leitor.setLenient(true);
+        try {
+            JsonToken inicio = leitor.peek();
+            lista = inicio == JsonToken.BEGIN_ARRAY;
+            if (!lista && inicio != JsonToken.BEGIN_OBJECT)
+                throw new IllegalArgumentException("Não foi possível obter JSON de produtos em lote");
+            if (lista)
+                leitor.beginArray();
+        } catch (IOException e) {
+            throw traduzir(e);
+        }
+    }
+
+    /**
+     * Indica se há mais itens no lote.
+     *
+     * @throws IllegalArgumentException Se o JSON do lote for inválido.
+     */
+    @Override
+    public boolean hasNext() {
+        if (terminado)
+            return false;
+        try {
+            boolean haMais = lista ? leitor.hasNext() : leitor.peek() != JsonToken.END_DOCUMENT;
+            if (!haMais) {
+                if (lista)
+                    leitor.endArray();
+                terminado = true;
+            }
+            return haMais;
+        } catch (IOException e) {
+            throw traduzir(e);
+        }
+    }
+
+    /**
+     * Lê o próximo item do lote.
+     *
+     * @return O objeto JSON do item.
+     * @throws IllegalArgumentException Se o item não for um objeto JSON ou se o JSON for inválido.
+     */
+    @Override
+    public JsonObject next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        try {
+            JsonElement item = JsonParser.parseReader(leitor);
+            if (!item.isJsonObject())
+                throw new IllegalArgumentException("Item do lote não é um objeto JSON: " + item);
+            return item.getAsJsonObject();
+        } catch (JsonIOException e) {
+            if (e.getCause() instanceof IOException)
+                throw traduzir((IOException) e.getCause());
+            throw new RuntimeException("Erro ao ler o corpo da requisição: " + e.getMessage(), e);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("JSON do lote inválido: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            leitor.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao fechar o corpo da requisição: " + e.getMessage(), e);
+        }
+    }
+
+    private static RuntimeException traduzir(IOException e) {
+        if (e instanceof MalformedJsonException || e instanceof ZipException)
+            return new IllegalArgumentException("JSON do lote inválido: " + e.getMessage(), e);
+        return new RuntimeException("Erro ao ler o corpo da requisição: " + e.getMessage(), e);
+    }
+}
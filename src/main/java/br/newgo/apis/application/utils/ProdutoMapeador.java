@@ -3,7 +3,6 @@ package br.newgo.apis.application.utils;
 import br.newgo.apis.application.dtos.AtualizacaoLoteProdutoDTO;
 import br.newgo.apis.infrastructure.entities.Produto;
 import br.newgo.apis.application.dtos.ProdutoDTO;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
 import java.util.List;
@@ -36,7 +35,7 @@ public class ProdutoMapeador {
     }
 
     public static ProdutoDTO mapearParaDTO(JsonObject objetoJson){
-        return new Gson().fromJson(objetoJson, ProdutoDTO.class);
+        return ConversorJson.obter().fromJson(objetoJson, ProdutoDTO.class);
     }
 
     public static Produto mapearParaProduto(ProdutoDTO produtoDTO){
@@ -50,7 +49,7 @@ public class ProdutoMapeador {
     }
 
     public static AtualizacaoLoteProdutoDTO mapearParaAtualizacaoLoteDTO(JsonObject objetoJson){
-        return new Gson().fromJson(objetoJson, AtualizacaoLoteProdutoDTO.class);
+        return ConversorJson.obter().fromJson(objetoJson, AtualizacaoLoteProdutoDTO.class);
     }
     public static List<ProdutoDTO> mapearParaListaDeDTOS(List<Produto> produtos){
         return produtos.stream()
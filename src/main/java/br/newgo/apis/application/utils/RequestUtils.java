@@ -2,34 +2,154 @@ package br.newgo.apis.application.utils;
 
 import br.newgo.apis.application.dtos.ProdutoDTO;
 import br.newgo.apis.application.dtos.RespostaDTO;
+import br.newgo.apis.infrastructure.config.ConfigProperties;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
 
 /**
  * Classe utilitária para lidar com operações relacionadas a solicitações HTTP.
  */
 public class RequestUtils {
 
+    private static final long TAMANHO_MAXIMO_DESCOMPRIMIDO =
+            ConfigProperties.getLong("http.requisicao.tamanho-maximo-descomprimido", 104857600);
+
     /**
-     * Lê o corpo da requisição HTTP e o converte para uma string.
+     * Lê o corpo da requisição HTTP e o converte para uma string. Corpos com Content-Encoding "gzip" ou
+     * "deflate" são descomprimidos, até "http.requisicao.tamanho-maximo-descomprimido" caracteres. O limite
+     * é verificado a cada leitura de um buffer fixo, de modo que um corpo de uma única linha também é
+     * interrompido ao passar do limite.
      *
      * @param req O objeto HttpServletRequest que representa a requisição HTTP.
      * @return Uma string contendo o corpo da requisição.
-     * @throws RuntimeException Se ocorrer um erro ao ler o corpo da requisição.
+     * @throws IllegalArgumentException Se o Content-Encoding não for suportado, se o corpo comprimido for
+     *                                  inválido ou se exceder o tamanho máximo descomprimido.
+     * @throws RuntimeException         Se ocorrer um erro ao ler o corpo da requisição.
      */
     public static String lerCorpoDaRequisicao(HttpServletRequest req)  {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(req.getInputStream()))) {
-            return reader.lines().collect(Collectors.joining());
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(abrirCorpo(req), StandardCharsets.UTF_8))) {
+            StringBuilder corpo = new StringBuilder();
+            char[] buffer = new char[8192];
+            int lidos;
+            while ((lidos = reader.read(buffer)) != -1) {
+                if (corpo.length() + lidos > TAMANHO_MAXIMO_DESCOMPRIMIDO)
+                    throw new IllegalArgumentException("O corpo da requisição excede o tamanho máximo permitido.");
+                corpo.append(buffer, 0, lidos);
+            }
+            return corpo.toString();
+        } catch (ZipException e) {
+            throw new IllegalArgumentException("Corpo da requisição comprimido inválido: " + e.getMessage(), e);
         } catch (IOException e) {
             throw new RuntimeException("Erro ao ler o corpo da requisição: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Abre o corpo da requisição para a leitura incremental de um lote, como lista JSON ou NDJSON.
+     * Corpos com Content-Encoding "gzip" ou "deflate" são descomprimidos à medida que são lidos, e a leitura
+     * é interrompida ao passar de "http.requisicao.tamanho-maximo-descomprimido" bytes descomprimidos.
+     *
+     * @param req O objeto HttpServletRequest que representa a requisição HTTP.
+     * @return O leitor dos itens do lote, que deve ser fechado após o uso. A leitura dos itens lança
+     *         IllegalArgumentException se o corpo exceder o tamanho máximo descomprimido.
+     * @throws IllegalArgumentException Se o Content-Encoding não for suportado ou se o corpo não começar
+     *                                  com uma lista ou um objeto JSON.
+     * @throws RuntimeException         Se ocorrer um erro ao ler o corpo da requisição.
+     */
+    public static LeitorLoteJson abrirLoteJson(HttpServletRequest req) {
+        try {
+            return new LeitorLoteJson(new BufferedReader(new InputStreamReader(
+                    new CorpoLimitado(abrirCorpo(req), TAMANHO_MAXIMO_DESCOMPRIMIDO), StandardCharsets.UTF_8), 8192));
+        } catch (ZipException e) {
+            throw new IllegalArgumentException("Corpo da requisição comprimido inválido: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao ler o corpo da requisição: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Indica se o corpo da requisição foi enviado como NDJSON, pelo Content-Type "application/x-ndjson".
+     *
+     * @param req O objeto HttpServletRequest que representa a requisição HTTP.
+     * @return true se o corpo for NDJSON.
+     */
+    public static boolean isNdjson(HttpServletRequest req) {
+        String tipo = req.getContentType();
+        return tipo != null && tipo.trim().toLowerCase(Locale.ROOT).startsWith("application/x-ndjson");
+    }
+
+    private static InputStream abrirCorpo(HttpServletRequest req) throws IOException {
+        String codificacao = req.getHeader("Content-Encoding");
+        if (codificacao == null || codificacao.trim().isEmpty() || codificacao.trim().equalsIgnoreCase("identity"))
+            return req.getInputStream();
+
+        switch (codificacao.trim().toLowerCase(Locale.ROOT)) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(req.getInputStream(), 8192);
+            case "deflate":
+                return new InflaterInputStream(req.getInputStream());
+            default:
+                throw new IllegalArgumentException("Content-Encoding não suportado: " + codificacao);
+        }
+    }
+
+    /**
+     * Fluxo que conta os bytes lidos e interrompe a leitura ao passar do limite, para que um corpo comprimido
+     * pequeno não seja descomprimido indefinidamente.
+     */
+    private static class CorpoLimitado extends FilterInputStream {
+        private final long limite;
+        private long lidos;
+
+        private CorpoLimitado(InputStream corpo, long limite) {
+            super(corpo);
+            this.limite = limite;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int lido = super.read();
+            if (lido >= 0)
+                contar(1);
+            return lido;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int quantidade = super.read(b, off, len);
+            if (quantidade > 0)
+                contar(quantidade);
+            return quantidade;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long pulados = super.skip(n);
+            contar(pulados);
+            return pulados;
+        }
+
+        private void contar(long quantidade) {
+            lidos += quantidade;
+            if (lidos > limite)
+                throw new IllegalArgumentException("O corpo da requisição excede o tamanho máximo permitido.");
+        }
+    }
+
     public static String gerarLocationHeader(HttpServletRequest req, List<RespostaDTO<Object>> respostas) {
         String requestUrl = req.getRequestURL().toString() + "/";
 
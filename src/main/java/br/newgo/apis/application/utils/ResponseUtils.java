@@ -1,34 +1,251 @@
 package br.newgo.apis.application.utils;
 
+import br.newgo.apis.infrastructure.config.ConfigProperties;
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Classe utilitária para lidar com respostas HTTP.
+ *
+ * As respostas JSON são comprimidas com gzip ou deflate conforme o cabeçalho Accept-Encoding da requisição,
+ * com o nível "http.compressao.nivel". Respostas de tamanho conhecido só são comprimidas a partir de
+ * "http.compressao.tamanho-minimo" bytes; listagens transmitidas aos poucos são sempre comprimidas.
+ *
+ * Respostas de tamanho conhecido são codificadas em UTF-8 diretamente em um buffer de bytes reaproveitado
+ * pela thread da requisição, o que permite informar o Content-Length exato sem montar uma String intermediária.
+ * Buffers que cresceram além de "http.buffer.tamanho-maximo-reaproveitado" bytes são descartados após o uso.
  */
 public class ResponseUtils {
+    private static final boolean COMPRESSAO_HABILITADA = ConfigProperties.getBoolean("http.compressao.habilitada", true);
+    private static final int NIVEL_COMPRESSAO = Math.max(Deflater.BEST_SPEED,
+            Math.min(Deflater.BEST_COMPRESSION, ConfigProperties.getInt("http.compressao.nivel", 6)));
+    private static final int TAMANHO_MINIMO_COMPRESSAO = ConfigProperties.getInt("http.compressao.tamanho-minimo", 1024);
+    private static final int TAMANHO_MAXIMO_BUFFER = ConfigProperties.getInt("http.buffer.tamanho-maximo-reaproveitado", 1048576);
+    private static final ThreadLocal<BufferResposta> BUFFERS = ThreadLocal.withInitial(BufferResposta::new);
 
     /**
      * Escreve uma resposta JSON em um HttpServletResponse.
      *
      * Este método configura o tipo de conteúdo como "application/json" e a codificação de caracteres como "UTF-8"
-     * no HttpServletResponse e escreve a resposta JSON fornecida no corpo da resposta. Em caso de exceção de E/S
-     * ao escrever a resposta, a exceção é tratada utilizando o serviço de tratamento de exceções especificado
-     * e uma resposta de erro adequada é enviada.
+     * no HttpServletResponse e escreve a resposta JSON fornecida no corpo da resposta, comprimida quando o cliente
+     * aceitar e a resposta atingir o tamanho mínimo de compressão.
      *
+     * @param req      A requisição, cujo cabeçalho Accept-Encoding define a compressão.
      * @param resp     O objeto HttpServletResponse no qual a resposta JSON será escrita.
      * @param resposta A resposta JSON a ser escrita no HttpServletResponse.
-     * @throws RuntimeException Se ocorrer um erro ao lidar com a exceção de E/S.
+     * @throws RuntimeException Se ocorrer um erro ao escrever a resposta.
      */
-    public static void escreverJson(HttpServletResponse resp, String resposta) {
+    public static void escreverJson(HttpServletRequest req, HttpServletResponse resp, String resposta) {
+        escreverCorpo(req, resp, saida -> saida.write(String.valueOf(resposta)));
+    }
+
+    /**
+     * Serializa um objeto com o {@link ConversorJson} e o escreve como resposta JSON, com as mesmas regras de
+     * compressão de {@link #escreverJson(HttpServletRequest, HttpServletResponse, String)}.
+     *
+     * @param req  A requisição, cujo cabeçalho Accept-Encoding define a compressão.
+     * @param resp O objeto HttpServletResponse no qual a resposta JSON será escrita.
+     * @param dado O objeto a ser serializado.
+     * @throws RuntimeException Se ocorrer um erro ao escrever a resposta.
+     */
+    public static void escreverObjetoJson(HttpServletRequest req, HttpServletResponse resp, Object dado) {
+        escreverCorpo(req, resp, saida -> ConversorJson.obter().toJson(dado, saida));
+    }
+
+    private static void escreverCorpo(HttpServletRequest req, HttpServletResponse resp, Escrita escrita) {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
-        try (PrintWriter out = resp.getWriter()) {
-            out.print(resposta);
-            out.flush();
-        } catch (IOException e) {
+        BufferResposta buffer = BUFFERS.get();
+        try {
+            buffer.reset();
+            escrita.escrever(buffer.escritor);
+            buffer.escritor.flush();
+
+            String codificacao = buffer.size() >= TAMANHO_MINIMO_COMPRESSAO ? negociarCodificacao(req, resp) : null;
+            if (codificacao == null)
+                resp.setContentLength(buffer.size());
+
+            try (OutputStream out = abrirSaida(resp, codificacao)) {
+                buffer.writeTo(out);
+            }
+        } catch (IOException | JsonIOException e) {
             throw new RuntimeException("Erro ao escrever a resposta JSON: " + e.getMessage(), e);
+        } finally {
+            if (buffer.capacidade() > TAMANHO_MAXIMO_BUFFER)
+                BUFFERS.remove();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Escreve uma lista JSON em um HttpServletResponse à medida que os itens são produzidos.
+     *
+     * Cada item entregue pela fonte é serializado diretamente no corpo da resposta, sem montar a lista nem
+     * a string JSON completas em memória. O primeiro byte é enviado assim que o buffer da resposta enche.
+     *
+     * @param req   A requisição, cujo cabeçalho Accept-Encoding define a compressão.
+     * @param resp  O objeto HttpServletResponse no qual a lista JSON será escrita.
+     * @param tipo  O tipo dos itens da lista.
+     * @param fonte A fonte dos itens, que entrega cada um ao consumidor recebido.
+     * @param <T>   O tipo dos itens da lista.
+     * @throws RuntimeException Se ocorrer um erro ao escrever a resposta.
+     */
+    public static <T> void escreverListaJson(HttpServletRequest req, HttpServletResponse resp, Type tipo,
+                                             Consumer<Consumer<T>> fonte) {
+        escreverLista(req, resp, tipo, fonte, false);
+    }
+
+    /**
+     * Escreve os itens em um HttpServletResponse como NDJSON, um objeto JSON por linha, à medida que são
+     * produzidos, com as mesmas regras de compressão de
+     * {@link #escreverListaJson(HttpServletRequest, HttpServletResponse, Type, Consumer)}.
+     *
+     * @param req   A requisição, cujo cabeçalho Accept-Encoding define a compressão.
+     * @param resp  O objeto HttpServletResponse no qual os itens serão escritos.
+     * @param tipo  O tipo dos itens.
+     * @param fonte A fonte dos itens, que entrega cada um ao consumidor recebido.
+     * @param <T>   O tipo dos itens.
+     * @throws RuntimeException Se ocorrer um erro ao escrever a resposta.
+     */
+    public static <T> void escreverListaNdjson(HttpServletRequest req, HttpServletResponse resp, Type tipo,
+                                               Consumer<Consumer<T>> fonte) {
+        escreverLista(req, resp, tipo, fonte, true);
+    }
+
+    private static <T> void escreverLista(HttpServletRequest req, HttpServletResponse resp, Type tipo,
+                                          Consumer<Consumer<T>> fonte, boolean ndjson) {
+        resp.setContentType(ndjson ? "application/x-ndjson" : "application/json");
+        resp.setCharacterEncoding("UTF-8");
+        String codificacao = negociarCodificacao(req, resp);
+
+        try (Writer saida = new BufferedWriter(new OutputStreamWriter(abrirSaida(resp, codificacao), StandardCharsets.UTF_8))) {
+            Gson gson = ConversorJson.obter();
+            if (ndjson) {
+                fonte.accept(item -> {
+                    gson.toJson(item, tipo, saida);
+                    try {
+                        saida.write('\n');
+                    } catch (IOException e) {
+                        throw new JsonIOException(e);
+                    }
+                });
+                return;
+            }
+            JsonWriter escritor = new JsonWriter(saida);
+            escritor.beginArray();
+            fonte.accept(item -> gson.toJson(item, tipo, escritor));
+            escritor.endArray();
+            escritor.flush();
+        } catch (IOException | JsonIOException e) {
+            throw new RuntimeException("Erro ao escrever a resposta JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Escolhe a compressão da resposta pelo cabeçalho Accept-Encoding, preferindo gzip a deflate e respeitando
+     * os valores "q". Quando a compressão está habilitada, informa aos caches que a resposta varia conforme
+     * esse cabeçalho.
+     *
+     * @return "gzip", "deflate" ou null para a resposta sem compressão.
+     */
+    private static String negociarCodificacao(HttpServletRequest req, HttpServletResponse resp) {
+        if (!COMPRESSAO_HABILITADA)
+            return null;
+
+        resp.addHeader("Vary", "Accept-Encoding");
+        String aceitas = req.getHeader("Accept-Encoding");
+        if (aceitas == null)
+            return null;
+
+        double gzip = 0, deflate = 0, qualquer = 0;
+        for (String item : aceitas.toLowerCase(Locale.ROOT).split(",")) {
+            String[] partes = item.split(";");
+            String nome = partes[0].trim();
+            double q = 1;
+            for (int i = 1; i < partes.length; i++) {
+                String parametro = partes[i].trim();
+                if (parametro.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(parametro.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (nome.equals("gzip") || nome.equals("x-gzip"))
+                gzip = q;
+            else if (nome.equals("deflate"))
+                deflate = q;
+            else if (nome.equals("*"))
+                qualquer = q;
+        }
+        if (gzip == 0 && !aceitas.toLowerCase(Locale.ROOT).contains("gzip"))
+            gzip = qualquer;
+
+        if (gzip > 0 && gzip >= deflate)
+            return "gzip";
+        return deflate > 0 ? "deflate" : null;
+    }
+
+    /**
+     * Escrita do corpo da resposta no escritor UTF-8 do buffer.
+     */
+    private interface Escrita {
+        void escrever(Writer saida) throws IOException;
+    }
+
+    /**
+     * Buffer de bytes reaproveitável com um escritor UTF-8 próprio.
+     */
+    private static class BufferResposta extends ByteArrayOutputStream {
+        private final Writer escritor = new OutputStreamWriter(this, StandardCharsets.UTF_8);
+
+        private BufferResposta() {
+            super(8192);
+        }
+
+        private int capacidade() {
+            return buf.length;
+        }
+    }
+
+    private static OutputStream abrirSaida(HttpServletResponse resp, String codificacao) throws IOException {
+        OutputStream saida = resp.getOutputStream();
+        if (codificacao == null)
+            return saida;
+
+        resp.setHeader("Content-Encoding", codificacao);
+        if (codificacao.equals("gzip"))
+            return new GZIPOutputStream(saida, 8192) {
+                {
+                    def.setLevel(NIVEL_COMPRESSAO);
+                }
+            };
+        return new DeflaterOutputStream(saida, new Deflater(NIVEL_COMPRESSAO), 8192) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    def.end();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package br.newgo.apis.domain.services;
+
+/**
+ * Lançada quando uma escrita condicional (If-Match) encontra o produto em uma versão diferente da esperada.
+ */
+public class ConflitoVersaoException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public ConflitoVersaoException(String mensagem) {
+        super(mensagem);
+    }
+}
@@ -1,34 +1,135 @@
 package br.newgo.apis.domain.services;
 
 import br.newgo.apis.application.dtos.AtualizacaoLoteProdutoDTO;
+import br.newgo.apis.application.dtos.PaginaDTO;
+import br.newgo.apis.application.dtos.SugestaoDTO;
+import br.newgo.apis.infrastructure.UnidadeDeTrabalho;
+import br.newgo.apis.infrastructure.cache.IndiceEstoqueBaixo;
+import br.newgo.apis.infrastructure.config.ConfigProperties;
+import br.newgo.apis.infrastructure.entities.OperacaoLote;
 import br.newgo.apis.infrastructure.entities.Produto;
+import br.newgo.apis.infrastructure.entities.ProdutoEncontrado;
 import br.newgo.apis.infrastructure.dao.ProdutoDAO;
+import br.newgo.apis.application.utils.EtagUtils;
 import br.newgo.apis.application.utils.ProdutoAtributos;
 import br.newgo.apis.application.dtos.ProdutoDTO;
 
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import static br.newgo.apis.application.utils.ProdutoAtributos.*;
 import static br.newgo.apis.application.utils.ProdutoMapeador.*;
 
 /**
  * Classe que fornece serviços relacionados a produtos.
+ *
+ * Cada operação de escrita é executada em uma {@link UnidadeDeTrabalho}: leituras e alterações feitas
+ * durante a operação compartilham uma única conexão e transação, confirmada apenas ao final.
  */
 public class ProdutoService {
+    private static final Logger LOGGER = Logger.getLogger(ProdutoService.class.getName());
+    private static final String ERRO_INTERNO_LOTE = "Não foi possível processar o item do lote.";
+    private static final List<String> OPERACOES_PRECO = Arrays.asList(
+            "fixo", "aumentar-valor", "diminuir-valor", "aumentar-percentualmente", "diminuir-percentualmente");
+
     private final ProdutoDAO produtoDAO;
     private final ProdutoValidador produtoValidador;
+    private final int tamanhoBloco;
+    private final int limitePadrao;
+    private final int limiteMaximo;
+    private final int tamanhoMaximoBusca;
+    private final int limitePadraoAutocompletar;
+    private final int limiteMaximoAutocompletar;
 
     public ProdutoService(ProdutoDAO produtoDAO){
         this.produtoDAO = produtoDAO;
-        this.produtoValidador = new ProdutoValidador(produtoDAO);
+        this.produtoValidador = new ProdutoValidador();
+        this.tamanhoBloco = Math.max(1, ConfigProperties.getInt("lote.tamanho-bloco", 1000));
+        this.limiteMaximo = Math.max(1, ConfigProperties.getInt("paginacao.limite-maximo", 1000));
+        this.tamanhoMaximoBusca = Math.max(1, ConfigProperties.getInt("busca.tamanho-maximo", 200));
+        this.limiteMaximoAutocompletar = Math.max(1, ConfigProperties.getInt("autocompletar.limite-maximo", 50));
+        this.limitePadraoAutocompletar = Math.min(limiteMaximoAutocompletar,
+                Math.max(1, ConfigProperties.getInt("autocompletar.limite-padrao", 10)));
+        this.limitePadrao = Math.min(limiteMaximo, Math.max(1, ConfigProperties.getInt("paginacao.limite-padrao", 50)));
     }
 
+    /**
+     * Cria um produto com uma única instrução de inserção. Quando o filtro de duplicados indica que o nome
+     * ou o EAN-13 provavelmente já existem, a existência é confirmada no banco antes da inserção, evitando
+     * consumir um valor da sequência de ids em uma inserção que seria recusada.
+     *
+     * @param produtoDTO O produto a ser criado.
+     * @return O produto persistido.
+     * @throws IllegalArgumentException Se algum atributo for inválido ou se já existir um produto
+     *                                  com o mesmo nome ou EAN-13.
+     */
     public ProdutoDTO criar(ProdutoDTO produtoDTO) {
         validarProdutoDTO(produtoDTO, ATRIBUTOS_OBRIGATORIOS_SALVAR);
         return salvarEObterDto(produtoDTO);
     }
 
+    /**
+     * Cria vários produtos. Cada item é validado individualmente e os nomes e códigos EAN-13 repetidos
+     * dentro do próprio lote são recusados em memória; os itens restantes são inseridos em blocos, com
+     * uma consulta de duplicados e uma única inserção por bloco. Cada bloco usa sua própria unidade de
+     * trabalho, de modo que a falha de um bloco não desfaz os anteriores.
+     *
+     * @param produtosDTO Os produtos a serem criados, na ordem recebida.
+     * @return O resultado de cada criação, na mesma ordem.
+     */
+    public List<ResultadoLote<ProdutoDTO>> criarEmLote(List<ProdutoDTO> produtosDTO) {
+        List<ResultadoLote<ProdutoDTO>> resultados = new ArrayList<>(Collections.nCopies(produtosDTO.size(), null));
+        List<Integer> validos = new ArrayList<>();
+        Set<String> nomes = new HashSet<>();
+        Set<String> ean13s = new HashSet<>();
+
+        for (int i = 0; i < produtosDTO.size(); i++) {
+            ProdutoDTO produtoDTO = produtosDTO.get(i);
+            try {
+                produtoValidador.validarProduto(produtoDTO);
+                if (nomes.contains(produtoDTO.getNome()) || ean13s.contains(produtoDTO.getEan13()))
+                    throw new IllegalArgumentException(ProdutoValidador.PRODUTO_DUPLICADO);
+
+                nomes.add(produtoDTO.getNome());
+                ean13s.add(produtoDTO.getEan13());
+                validos.add(i);
+            } catch (IllegalArgumentException e) {
+                resultados.set(i, ResultadoLote.erro(e.getMessage()));
+            }
+        }
+
+        for (int inicio = 0; inicio < validos.size(); inicio += tamanhoBloco) {
+            List<Integer> bloco = validos.subList(inicio, Math.min(inicio + tamanhoBloco, validos.size()));
+            try {
+                UnidadeDeTrabalho.executar(() -> criarBloco(produtosDTO, bloco, resultados));
+            } catch (RuntimeException e) {
+                String motivo = obterMotivoFalhaDoBloco(e);
+                bloco.forEach(indice -> resultados.set(indice, ResultadoLote.erro(motivo)));
+            }
+        }
+        return resultados;
+    }
+
     /**
      * Obtém um objeto ProdutoDTO com base no hash fornecido.
      *
@@ -54,78 +155,245 @@ public class ProdutoService {
     }
 
     /**
-     * Obtém uma lista de todos os produtos disponíveis no sistema.
+     * Obtém a versão atual do catálogo de produtos, que muda a cada escrita em qualquer produto.
      *
-     * @return Uma lista de objetos ProdutoDTO representando todos os produtos.
+     * @return A versão do catálogo.
      */
-    public List<ProdutoDTO> obterTodos(){
-        return mapearParaListaDeDTOS(produtoDAO.buscarTodos());
+    public long obterVersaoCatalogo() {
+        return produtoDAO.buscarVersaoCatalogo();
     }
 
     /**
-     * Obtém uma lista de todos os produtos com base no status (ativo/inativo) fornecido.
+     * Obtém todos os produtos disponíveis no sistema, entregando cada um ao consumidor assim que é lido
+     * do banco, sem montar a lista completa em memória.
      *
-     * @param status O status (true para ativo, false para inativo) dos produtos a serem obtidos.
-     * @return Uma lista de objetos ProdutoDTO representando os produtos com o status especificado.
+     * @param versao     Recebe a versão do catálogo da listagem antes do primeiro produto, ou null.
+     * @param consumidor O consumidor de cada ProdutoDTO.
      */
-    public List<ProdutoDTO> obterTodosPorStatus(String status) {
-        return mapearParaListaDeDTOS(
-                produtoDAO.buscarTodosPorStatus(
-                            Boolean.parseBoolean(status)));
+    public void obterTodos(LongConsumer versao, Consumer<ProdutoDTO> consumidor){
+        produtoDAO.buscarTodos(versao, produto -> consumidor.accept(mapearParaDTO(produto)));
     }
 
-    public List<ProdutoDTO> obterTodosComEstoqueBaixo(){
-        return mapearParaListaDeDTOS(produtoDAO.buscarTodosComEstoqueBaixo());
+    /**
+     * Obtém todos os produtos com base no status (ativo/inativo) fornecido, entregando cada um ao consumidor.
+     *
+     * @param status     O status (true para ativo, false para inativo) dos produtos a serem obtidos.
+     * @param versao     Recebe a versão do catálogo da listagem antes do primeiro produto, ou null.
+     * @param consumidor O consumidor de cada ProdutoDTO com o status especificado.
+     */
+    public void obterTodosPorStatus(String status, LongConsumer versao, Consumer<ProdutoDTO> consumidor) {
+        produtoDAO.buscarTodosPorStatus(
+                Boolean.parseBoolean(status),
+                versao,
+                produto -> consumidor.accept(mapearParaDTO(produto)));
     }
 
-    public ProdutoDTO atualizarStatusLativo(String hash, ProdutoDTO produtoDTO){
-        validarProdutoDTO(produtoDTO, ATRIBUTO_STATUS);
-        produtoDAO.atualizarStatusLativo(Boolean.valueOf(produtoDTO.getLativo()), obterPorHash(hash).getHash());
-
-        return mapearParaDTO(obterPorHash(hash));
+    public void obterTodosComEstoqueBaixo(Consumer<ProdutoDTO> consumidor){
+        produtoDAO.buscarTodosComEstoqueBaixo(produto -> consumidor.accept(mapearParaDTO(produto)));
     }
 
-    public ProdutoDTO atualizar(String hash, ProdutoDTO produtoDTO){
-        Produto produto = obterPorHash(hash);
-
-        produtoValidador.validarSeProdutoEstaAtivo(produto.isLativo());
-        validarProdutoDTO(produtoDTO, ATRIBUTOS_ATUALIZAVEIS);
-
-        atualizarInformacoesProduto(produto, produtoDTO);
+    /**
+     * Obtém uma página de produtos em ordem de criação.
+     *
+     * @param cursor O cursor devolvido pela página anterior, ou null para a primeira página.
+     * @param limite A quantidade máxima de produtos, ou null para o padrão "paginacao.limite-padrao".
+     * @return A página de produtos e o cursor da próxima página.
+     * @throws IllegalArgumentException Se o cursor ou o limite forem inválidos.
+     */
+    public PaginaDTO<ProdutoDTO> obterPagina(String cursor, String limite) {
+        return montarPagina(cursor, limite, produtoDAO::buscarPagina);
+    }
 
-        produtoDAO.atualizar(produto);
+    /**
+     * Obtém uma página de produtos com o status (ativo/inativo) fornecido.
+     *
+     * @param status O status (true para ativo, false para inativo) dos produtos a serem obtidos.
+     * @param cursor O cursor devolvido pela página anterior, ou null para a primeira página.
+     * @param limite A quantidade máxima de produtos, ou null para o padrão.
+     * @return A página de produtos e o cursor da próxima página.
+     * @throws IllegalArgumentException Se o cursor ou o limite forem inválidos.
+     */
+    public PaginaDTO<ProdutoDTO> obterPaginaPorStatus(String status, String cursor, String limite) {
+        Boolean lativo = Boolean.parseBoolean(status);
+        return montarPagina(cursor, limite, (aposId, quantidade) ->
+                produtoDAO.buscarPaginaPorStatus(lativo, aposId, quantidade));
+    }
 
-        return mapearParaDTO(obterPorHash(hash));
+    /**
+     * Obtém uma página de produtos ativos com estoque abaixo do mínimo, da maior para a menor falta de estoque.
+     * Sem cursor, a página corresponde aos "limite" produtos com maior falta (top-K).
+     *
+     * @param cursor O cursor devolvido pela página anterior, ou null para a primeira página.
+     * @param limite A quantidade máxima de produtos, ou null para o padrão.
+     * @return A página de produtos e o cursor da próxima página.
+     * @throws IllegalArgumentException Se o cursor ou o limite forem inválidos.
+     */
+    public PaginaDTO<ProdutoDTO> obterPaginaComEstoqueBaixo(String cursor, String limite) {
+        BigDecimal sobraApos = BigDecimal.valueOf(-Double.MAX_VALUE);
+        long idApos = Long.MIN_VALUE;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] posicao = decodificarCursor(cursor).split(":");
+            try {
+                if (posicao.length != 2)
+                    throw new NumberFormatException();
+                sobraApos = new BigDecimal(posicao[0]);
+                idApos = Long.parseLong(posicao[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido.", e);
+            }
+        }
+        int quantidade = produtoValidador.validarERetornarLimite(limite, limitePadrao, limiteMaximo);
+
+        List<Produto> produtos = produtoDAO.buscarPaginaComEstoqueBaixo(sobraApos, idApos, quantidade + 1);
+        if (produtos.size() <= quantidade)
+            return new PaginaDTO<>(mapearParaListaDeDTOS(produtos), null);
+
+        Produto ultimo = produtos.get(quantidade - 1);
+        return new PaginaDTO<>(mapearParaListaDeDTOS(produtos.subList(0, quantidade)),
+                codificarCursor(IndiceEstoqueBaixo.sobra(ultimo).toPlainString() + ":" + ultimo.getId()));
     }
 
-    public ProdutoDTO atualizarPrecoEmLote(AtualizacaoLoteProdutoDTO atualizacaoLoteProdutoDTO){
+    /**
+     * Busca produtos pelo nome e pela descrição, da maior para a menor relevância, em páginas.
+     *
+     * @param texto  O texto buscado.
+     * @param cursor O cursor devolvido pela página anterior, ou null para a primeira página.
+     * @param limite A quantidade máxima de produtos, ou null para o padrão.
+     * @return A página de produtos encontrados e o cursor da próxima página.
+     * @throws IllegalArgumentException Se o texto, o cursor ou o limite forem inválidos.
+     */
+    public PaginaDTO<ProdutoDTO> buscar(String texto, String cursor, String limite) {
+        String consulta = produtoValidador.validarERetornarTextoBusca(texto, tamanhoMaximoBusca);
+        float relevanciaApos = Float.MAX_VALUE;
+        long idApos = Long.MIN_VALUE;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] posicao = decodificarCursor(cursor).split(":");
+            try {
+                if (posicao.length != 2)
+                    throw new NumberFormatException();
+                relevanciaApos = Float.parseFloat(posicao[0]);
+                idApos = Long.parseLong(posicao[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido.", e);
+            }
+        }
+        int quantidade = produtoValidador.validarERetornarLimite(limite, limitePadrao, limiteMaximo);
+
+        List<ProdutoEncontrado> encontrados = produtoDAO.buscarTexto(consulta, relevanciaApos, idApos, quantidade + 1);
+        List<Produto> produtos = encontrados.stream()
+                .limit(quantidade)
+                .map(ProdutoEncontrado::getProduto)
+                .collect(Collectors.toList());
+        if (encontrados.size() <= quantidade)
+            return new PaginaDTO<>(mapearParaListaDeDTOS(produtos), null);
+
+        ProdutoEncontrado ultimo = encontrados.get(quantidade - 1);
+        return new PaginaDTO<>(mapearParaListaDeDTOS(produtos),
+                codificarCursor(ultimo.getRelevancia() + ":" + ultimo.getProduto().getId()));
+    }
 
-        Produto produto = obterPorHash(atualizacaoLoteProdutoDTO.getHash());
+    /**
+     * Sugere produtos cujo nome começa com o prefixo informado, ignorando acentos e maiúsculas.
+     *
+     * @param prefixo O prefixo digitado.
+     * @param limite  A quantidade máxima de sugestões, ou null para o padrão "autocompletar.limite-padrao".
+     * @return O hash e o nome dos produtos encontrados, em ordem alfabética.
+     * @throws IllegalArgumentException Se o prefixo ou o limite forem inválidos.
+     */
+    public List<SugestaoDTO> autocompletar(String prefixo, String limite) {
+        String valor = produtoValidador.validarERetornarPrefixo(prefixo, tamanhoMaximoBusca);
+        int quantidade = produtoValidador.validarERetornarLimite(limite, limitePadraoAutocompletar, limiteMaximoAutocompletar);
 
-        produtoValidador.validarSeProdutoEstaAtivo(produto.isLativo());
-        produtoValidador.validarDoubleNegativo(atualizacaoLoteProdutoDTO.getValor(), "valor");
+        return produtoDAO.buscarNomesPorPrefixo(valor, quantidade).stream()
+                .map(nome -> new SugestaoDTO(nome.getHash().toString(), nome.getNome()))
+                .collect(Collectors.toList());
+    }
 
-        double valor = obterNovoPreco(produto.getPreco(),
-                                        atualizacaoLoteProdutoDTO.getOperacao(),
-                                        atualizacaoLoteProdutoDTO.getValor());
+    public ProdutoDTO atualizarStatusLativo(String hash, ProdutoDTO produtoDTO){
+        return atualizarStatusLativo(hash, produtoDTO, null);
+    }
 
-        produtoDAO.atualizarAtributoDouble("preco", valor, produto.getHash());
+    /**
+     * Atualiza o status do produto. Com uma versão esperada, o produto é bloqueado e a atualização só é
+     * feita se a sua ETag atual corresponder a ela.
+     *
+     * @param hash            O hash do produto.
+     * @param produtoDTO      O novo status.
+     * @param versaoEsperada  O valor do cabeçalho If-Match, ou null para atualizar incondicionalmente.
+     * @return O produto atualizado.
+     * @throws ConflitoVersaoException Se a versão atual do produto não for a esperada.
+     */
+    public ProdutoDTO atualizarStatusLativo(String hash, ProdutoDTO produtoDTO, String versaoEsperada){
+        validarProdutoDTO(produtoDTO, ATRIBUTO_STATUS);
+        if (versaoEsperada == null)
+            return mapearParaDTO(exigirProduto(
+                    produtoDAO.atualizarStatusLativo(
+                            Boolean.valueOf(produtoDTO.getLativo()),
+                            produtoValidador.validarERetornarHash(hash))));
+
+        return UnidadeDeTrabalho.executar(() -> {
+            Produto produto = obterPorHashParaAtualizacao(hash);
+            validarVersao(produto, versaoEsperada);
+
+            return mapearParaDTO(exigirProduto(
+                    produtoDAO.atualizarStatusLativo(Boolean.valueOf(produtoDTO.getLativo()), produto.getHash())));
+        });
+    }
 
-        return mapearParaDTO(obterPorHash(produto.getHash().toString()));
+    public ProdutoDTO atualizar(String hash, ProdutoDTO produtoDTO){
+        return atualizar(hash, produtoDTO, null);
     }
 
-    public ProdutoDTO atualizarEstoqueEmLote(AtualizacaoLoteProdutoDTO atualizacaoLoteProdutoDTO) {
+    /**
+     * Atualiza os atributos do produto. Com uma versão esperada, a atualização só é feita se a ETag atual
+     * do produto, lida com bloqueio dentro da mesma transação, corresponder a ela.
+     *
+     * @param hash            O hash do produto.
+     * @param produtoDTO      Os novos atributos.
+     * @param versaoEsperada  O valor do cabeçalho If-Match, ou null para atualizar incondicionalmente.
+     * @return O produto atualizado.
+     * @throws ConflitoVersaoException Se a versão atual do produto não for a esperada.
+     */
+    public ProdutoDTO atualizar(String hash, ProdutoDTO produtoDTO, String versaoEsperada){
+        return UnidadeDeTrabalho.executar(() -> {
+            Produto produto = obterPorHashParaAtualizacao(hash);
+            if (versaoEsperada != null)
+                validarVersao(produto, versaoEsperada);
 
-        Produto produto = obterPorHash(atualizacaoLoteProdutoDTO.getHash());
+            produtoValidador.validarSeProdutoEstaAtivo(produto.isLativo());
+            validarProdutoDTO(produtoDTO, ATRIBUTOS_ATUALIZAVEIS);
 
-        produtoValidador.validarSeProdutoEstaAtivo(produto.isLativo());
-        produtoValidador.validarDoubleZero(atualizacaoLoteProdutoDTO.getValor(), "valor");
+            atualizarInformacoesProduto(produto, produtoDTO);
 
-        double valor = obterNovoValorEstoque(produto.getQuantidade(), atualizacaoLoteProdutoDTO.getValor());
+            return mapearParaDTO(exigirProduto(produtoDAO.atualizar(produto)));
+        });
+    }
 
-        produtoDAO.atualizarAtributoDouble("quantidade", valor, produto.getHash());
+    /**
+     * Atualiza o preço de vários produtos. Cada item é validado individualmente e os itens válidos são
+     * aplicados em blocos, com uma única instrução por bloco; o cálculo do novo preço e a verificação de
+     * valor negativo são feitos no banco. Itens repetidos para o mesmo hash são aplicados na ordem do lote.
+     * Cada bloco usa sua própria unidade de trabalho, de modo que os bloqueios das linhas duram apenas o
+     * bloco e a falha de um bloco não desfaz os anteriores.
+     *
+     * @param atualizacoes As atualizações de preço, na ordem recebida.
+     * @return O resultado de cada atualização, na mesma ordem.
+     */
+    public List<ResultadoLote<ProdutoDTO>> atualizarPrecoEmLote(List<AtualizacaoLoteProdutoDTO> atualizacoes){
+        return atualizarEmLote(atualizacoes, this::validarAtualizacaoPreco,
+                produtoDAO::atualizarPrecoEmLote, "novo preço");
+    }
 
-        return mapearParaDTO(obterPorHash(produto.getHash().toString()));
+    /**
+     * Atualiza o estoque de vários produtos, somando o valor informado à quantidade atual.
+     * Segue as mesmas regras de {@link #atualizarPrecoEmLote(List)}.
+     *
+     * @param atualizacoes As atualizações de estoque, na ordem recebida.
+     * @return O resultado de cada atualização, na mesma ordem.
+     */
+    public List<ResultadoLote<ProdutoDTO>> atualizarEstoqueEmLote(List<AtualizacaoLoteProdutoDTO> atualizacoes) {
+        return atualizarEmLote(atualizacoes, this::validarAtualizacaoEstoque,
+                produtoDAO::atualizarEstoqueEmLote, "novo estoque");
     }
 
         /**
@@ -139,11 +407,24 @@ public class ProdutoService {
             throw new NoSuchElementException("Produto não deletado.");
     }
 
+    private void validarVersao(Produto produto, String versaoEsperada) {
+        if (!EtagUtils.corresponde(versaoEsperada, EtagUtils.gerar(mapearParaDTO(produto)), false))
+            throw new ConflitoVersaoException("O produto foi alterado desde a versão informada em If-Match.");
+    }
+
     private ProdutoDTO salvarEObterDto(ProdutoDTO produtoDTO){
-        return obterDtoPorHash(
-                produtoDAO.salvar(
-                        mapearParaProduto(
-                                produtoDTO)));
+        if (produtoDAO.isFiltroDuplicadosCarregado()) {
+            Map<String, Set<String>> existentes = produtoDAO.buscarNomesEEan13Existentes(
+                    Collections.singletonList(produtoDTO.getNome()), Collections.singletonList(produtoDTO.getEan13()));
+            if (!existentes.get("nome").isEmpty() || !existentes.get("ean13").isEmpty())
+                throw new IllegalArgumentException(ProdutoValidador.PRODUTO_DUPLICADO);
+        }
+
+        Produto produto = produtoDAO.salvar(mapearParaProduto(produtoDTO));
+        if (produto == null)
+            throw new IllegalArgumentException(ProdutoValidador.PRODUTO_DUPLICADO);
+
+        return mapearParaDTO(produto);
     }
 
     private void validarProdutoDTO(ProdutoDTO produtoDTO, ProdutoAtributos atributos) {
@@ -169,6 +450,77 @@ public class ProdutoService {
         return produto;
     }
 
+    /**
+     * Obtém um produto com base no hash especificado, bloqueando-o até o fim da unidade de trabalho atual
+     * para que escritas concorrentes não se intercalem entre a leitura e a alteração.
+     *
+     * @param hash O hash do produto a ser obtido.
+     * @return O produto correspondente ao hash.
+     * @throws IllegalArgumentException Se o formato do hash for inválido.
+     * @throws NoSuchElementException   Se o produto não for encontrado.
+     */
+    private Produto obterPorHashParaAtualizacao(String hash){
+        Produto produto = produtoDAO.buscarPorHashParaAtualizacao(produtoValidador.validarERetornarHash(hash));
+        if (produto == null)
+            throw new NoSuchElementException("Produto não encontrado.");
+
+        return produto;
+    }
+
+    /**
+     * Garante que a escrita encontrou o produto.
+     *
+     * @param produto O produto devolvido pela escrita.
+     * @return O próprio produto.
+     * @throws NoSuchElementException Se nenhum produto foi alterado.
+     */
+    private Produto exigirProduto(Produto produto){
+        if (produto == null)
+            throw new NoSuchElementException("Produto não encontrado.");
+
+        return produto;
+    }
+
+    /**
+     * Monta uma página buscando um produto além do limite, apenas para saber se existe uma próxima página.
+     *
+     * @param cursor O cursor da página anterior.
+     * @param limite O limite informado na requisição.
+     * @param busca  A busca paginada, que recebe o último id da página anterior e a quantidade de linhas.
+     * @return A página de produtos.
+     */
+    private PaginaDTO<ProdutoDTO> montarPagina(String cursor, String limite, BiFunction<Long, Integer, List<Produto>> busca) {
+        long aposId = 0;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                aposId = Long.parseLong(decodificarCursor(cursor));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido.", e);
+            }
+        }
+        int quantidade = produtoValidador.validarERetornarLimite(limite, limitePadrao, limiteMaximo);
+
+        List<Produto> produtos = busca.apply(aposId, quantidade + 1);
+        if (produtos.size() <= quantidade)
+            return new PaginaDTO<>(mapearParaListaDeDTOS(produtos), null);
+
+        List<Produto> pagina = produtos.subList(0, quantidade);
+        return new PaginaDTO<>(mapearParaListaDeDTOS(pagina), codificarCursor(Long.toString(pagina.get(quantidade - 1).getId())));
+    }
+
+    private String codificarCursor(String posicao) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(posicao.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String decodificarCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido.", e);
+        }
+    }
+
     private void atualizarInformacoesProduto(Produto produto, ProdutoDTO produtoDTO) {
         if(produtoDTO.getDescricao() != null && !produtoDTO.getDescricao().equals(produto.getDescricao()))
             produto.setDescricao(produtoDTO.getDescricao());
@@ -183,32 +535,163 @@ public class ProdutoService {
             produto.setEstoqueMin(produtoDTO.getEstoqueMin());
     }
 
-    private double obterNovoPreco(double valorAtual, String operacao, double valor){
-        double novoPreco = 0;
+    private List<ResultadoLote<ProdutoDTO>> atualizarEmLote(List<AtualizacaoLoteProdutoDTO> atualizacoes,
+                                                            Function<AtualizacaoLoteProdutoDTO, OperacaoLote> validacao,
+                                                            Function<List<OperacaoLote>, Map<UUID, Produto>> atualizacao,
+                                                            String atributoNovoValor) {
+        List<ResultadoLote<ProdutoDTO>> resultados = new ArrayList<>(Collections.nCopies(atualizacoes.size(), null));
+        List<OperacaoLote> operacoes = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+
+        for (int i = 0; i < atualizacoes.size(); i++) {
+            try {
+                operacoes.add(validacao.apply(atualizacoes.get(i)));
+                indices.add(i);
+            } catch (IllegalArgumentException e) {
+                resultados.set(i, ResultadoLote.erro(e.getMessage()));
+            }
+        }
+
+        for (List<Integer> bloco : separarEmBlocos(operacoes)) {
+            try {
+                UnidadeDeTrabalho.executar(() -> atualizarBloco(operacoes, indices, bloco, atualizacao,
+                        atributoNovoValor, resultados));
+            } catch (RuntimeException e) {
+                String motivo = obterMotivoFalhaDoBloco(e);
+                bloco.forEach(posicao -> resultados.set(indices.get(posicao), ResultadoLote.erro(motivo)));
+            }
+        }
+        return resultados;
+    }
 
-        if(operacao.equalsIgnoreCase("fixo"))
-            novoPreco = valor;
-        else if (operacao.equalsIgnoreCase("aumentar-valor"))
-            novoPreco = valorAtual + valor;
-        else if (operacao.equalsIgnoreCase("diminuir-valor"))
-            novoPreco = valorAtual - valor;
-        else if (operacao.equalsIgnoreCase("aumentar-percentualmente"))
-            novoPreco = valorAtual + (valorAtual * (valor/100));
-        else if (operacao.equalsIgnoreCase("diminuir-percentualmente"))
-            novoPreco = valorAtual - (valorAtual * (valor/100));
-        else
-            throw new IllegalArgumentException("A operação '" + operacao + "' é inválida!");
+    private void atualizarBloco(List<OperacaoLote> operacoes, List<Integer> indices, List<Integer> bloco,
+                                Function<List<OperacaoLote>, Map<UUID, Produto>> atualizacao,
+                                String atributoNovoValor, List<ResultadoLote<ProdutoDTO>> resultados) {
+        List<OperacaoLote> operacoesDoBloco = new ArrayList<>(bloco.size());
+        bloco.forEach(posicao -> operacoesDoBloco.add(operacoes.get(posicao)));
+
+        Map<UUID, Produto> atualizados = atualizacao.apply(operacoesDoBloco);
+        Map<UUID, Boolean> statusDasFalhas = buscarStatusDasFalhas(operacoesDoBloco, atualizados);
+
+        for (Integer posicao : bloco) {
+            UUID hash = operacoes.get(posicao).getHash();
+            Produto produto = atualizados.get(hash);
+            resultados.set(indices.get(posicao), produto != null
+                    ? ResultadoLote.sucesso(mapearParaDTO(produto))
+                    : ResultadoLote.erro(obterMotivoFalha(statusDasFalhas.get(hash), atributoNovoValor)));
+        }
+    }
+
+    private void criarBloco(List<ProdutoDTO> produtosDTO, List<Integer> bloco,
+                            List<ResultadoLote<ProdutoDTO>> resultados) {
+        List<String> nomes = new ArrayList<>(bloco.size());
+        List<String> ean13s = new ArrayList<>(bloco.size());
+        for (Integer indice : bloco) {
+            nomes.add(produtosDTO.get(indice).getNome());
+            ean13s.add(produtosDTO.get(indice).getEan13());
+        }
+
+        Map<String, Set<String>> existentes = produtoDAO.buscarNomesEEan13Existentes(nomes, ean13s);
+        List<Produto> novos = new ArrayList<>(bloco.size());
+        for (Integer indice : bloco) {
+            ProdutoDTO produtoDTO = produtosDTO.get(indice);
+            if (existentes.get("nome").contains(produtoDTO.getNome())
+                    || existentes.get("ean13").contains(produtoDTO.getEan13()))
+                resultados.set(indice, ResultadoLote.erro(ProdutoValidador.PRODUTO_DUPLICADO));
+            else
+                novos.add(mapearParaProduto(produtoDTO));
+        }
+
+        Map<String, Produto> salvos = novos.isEmpty() ? Collections.emptyMap() : produtoDAO.salvarEmLote(novos);
+        for (Integer indice : bloco) {
+            if (resultados.get(indice) != null)
+                continue;
+            Produto salvo = salvos.get(produtosDTO.get(indice).getNome());
+            resultados.set(indice, salvo != null
+                    ? ResultadoLote.sucesso(mapearParaDTO(salvo))
+                    : ResultadoLote.erro(ProdutoValidador.PRODUTO_DUPLICADO));
+        }
+    }
 
-        produtoValidador.validarDoubleNegativo(novoPreco, "novo preço");
+    private OperacaoLote validarAtualizacaoPreco(AtualizacaoLoteProdutoDTO atualizacao) {
+        UUID hash = produtoValidador.validarERetornarHash(atualizacao.getHash());
+        produtoValidador.validarDoubleNegativo(atualizacao.getValor(), "valor");
 
-        return novoPreco;
+        String operacao = atualizacao.getOperacao() == null ? null : atualizacao.getOperacao().toLowerCase(Locale.ROOT);
+        if (!OPERACOES_PRECO.contains(operacao))
+            throw new IllegalArgumentException("A operação '" + atualizacao.getOperacao() + "' é inválida!");
+
+        return new OperacaoLote(hash, operacao, atualizacao.getValor());
     }
 
-    private double obterNovoValorEstoque(double quantidadeAtual, double valor){
-        double novoValor = quantidadeAtual + (valor);
+    private OperacaoLote validarAtualizacaoEstoque(AtualizacaoLoteProdutoDTO atualizacao) {
+        UUID hash = produtoValidador.validarERetornarHash(atualizacao.getHash());
+        produtoValidador.validarDoubleZero(atualizacao.getValor(), "valor");
+
+        return new OperacaoLote(hash, null, atualizacao.getValor());
+    }
 
-        produtoValidador.validarDoubleNegativo(novoValor, "novo estoque");
+    /**
+     * Separa as posições das operações em blocos de até "lote.tamanho-bloco" itens sem hashes repetidos.
+     * As ocorrências repetidas de um hash vão para blocos posteriores, na ordem em que aparecem no lote.
+     *
+     * @param operacoes As operações validadas.
+     * @return Os blocos, cada um com as posições das operações que o compõem.
+     */
+    private List<List<Integer>> separarEmBlocos(List<OperacaoLote> operacoes) {
+        Map<UUID, Integer> ocorrencias = new HashMap<>();
+        List<List<Integer>> rodadas = new ArrayList<>();
+
+        for (int posicao = 0; posicao < operacoes.size(); posicao++) {
+            int rodada = ocorrencias.merge(operacoes.get(posicao).getHash(), 1, Integer::sum) - 1;
+            if (rodada == rodadas.size())
+                rodadas.add(new ArrayList<>());
+            rodadas.get(rodada).add(posicao);
+        }
+
+        List<List<Integer>> blocos = new ArrayList<>();
+        for (List<Integer> rodada : rodadas)
+            for (int inicio = 0; inicio < rodada.size(); inicio += tamanhoBloco)
+                blocos.add(rodada.subList(inicio, Math.min(inicio + tamanhoBloco, rodada.size())));
+
+        return blocos;
+    }
+
+    private Map<UUID, Boolean> buscarStatusDasFalhas(List<OperacaoLote> operacoes, Map<UUID, Produto> atualizados) {
+        List<UUID> falhas = operacoes.stream()
+                .map(OperacaoLote::getHash)
+                .filter(hash -> !atualizados.containsKey(hash))
+                .collect(Collectors.toList());
+
+        return falhas.isEmpty() ? Collections.emptyMap() : produtoDAO.buscarStatusPorHashes(falhas);
+    }
+
+    /**
+     * Traduz a falha de um bloco do lote na mensagem devolvida a cada item. Falhas de validação e produtos
+     * ausentes mantêm suas mensagens, violações de unicidade viram {@link ProdutoValidador#PRODUTO_DUPLICADO}
+     * e as demais são registradas no log e respondidas com uma mensagem genérica, sem expor detalhes do banco.
+     *
+     * @param falha A exceção que interrompeu o bloco.
+     * @return A mensagem de erro de cada item do bloco.
+     */
+    private String obterMotivoFalhaDoBloco(RuntimeException falha) {
+        if (falha instanceof IllegalArgumentException || falha instanceof NoSuchElementException)
+            return falha.getMessage();
+
+        for (Throwable causa = falha; causa != null; causa = causa.getCause()) {
+            if (causa instanceof SQLException && "23505".equals(((SQLException) causa).getSQLState()))
+                return ProdutoValidador.PRODUTO_DUPLICADO;
+        }
+
+        LOGGER.log(Level.SEVERE, "Erro ao processar um bloco do lote de produtos.", falha);
+        return ERRO_INTERNO_LOTE;
+    }
 
-        return novoValor;
+    private String obterMotivoFalha(Boolean lativo, String atributoNovoValor) {
+        if (lativo == null)
+            return "Produto não encontrado.";
+        if (!lativo)
+            return "Produto não está ativo.";
+        return "O atributo '" + atributoNovoValor + "' não pode ser negativo.";
     }
 }
\ No newline at end of file
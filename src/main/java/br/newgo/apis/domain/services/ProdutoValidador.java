@@ -1,21 +1,23 @@
 package br.newgo.apis.domain.services;
 
 import br.newgo.apis.application.dtos.ProdutoDTO;
-import br.newgo.apis.infrastructure.dao.ProdutoDAO;
 
 import java.util.UUID;
 
 public class ProdutoValidador {
-    private final ProdutoDAO produtoDAO;
-    public ProdutoValidador(ProdutoDAO produtoDAO) {
-        this.produtoDAO = produtoDAO;
-    }
+    static final String PRODUTO_DUPLICADO = "Já existe um produto com o mesmo nome ou EAN-13.";
 
+    /**
+     * Valida os atributos de um produto. A duplicidade de nome e EAN-13 não é verificada aqui:
+     * ela é garantida pelos índices únicos da tabela no momento da inserção.
+     *
+     * @param produto O produto a ser validado.
+     * @throws IllegalArgumentException Se algum atributo for inválido.
+     */
     public void validarProduto(ProdutoDTO produto) {
         if(produto.getNome() != null) {
             validarStringNulaOuVazia(produto.getNome(), "nome");
             validarStringNulaOuVazia(produto.getEan13(), "ean13");
-            validarNomeOuEan13Duplicado(produto.getNome(), produto.getEan13());
         }
         validarDoubleNegativo(produto.getPreco(), "preco");
         validarDoubleNegativo(produto.getQuantidade(), "quantidade");
@@ -37,19 +39,6 @@ public class ProdutoValidador {
             throw new IllegalArgumentException("O atributo '"+ atributo + "' não pode ser nulo ou vazio.");
     }
 
-    /**
-     * Valida se já existe um produto com o mesmo nome ou EAN-13 no banco de dados.
-     *
-     * @param nome  O nome do produto.
-     * @param ean13 O código EAN-13 do produto.
-     * @throws IllegalArgumentException Se já existir um produto com o mesmo nome ou EAN-13.
-     */
-    private void validarNomeOuEan13Duplicado(String nome, String ean13)  {
-        if (produtoDAO.existeProdutoComNomeOuEan13(nome, ean13)) {
-            throw new IllegalArgumentException("Já existe um produto com o mesmo nome ou EAN-13.");
-        }
-    }
-
     public void verificarLativo(ProdutoDTO produtoDTO){
         String lativo = produtoDTO.getLativo();
         if (!(lativo.equalsIgnoreCase("true")||lativo.equalsIgnoreCase("false")))
@@ -71,6 +60,65 @@ public class ProdutoValidador {
         }
     }
 
+    /**
+     * Valida o limite de itens de uma página e retorna o valor correspondente.
+     *
+     * @param limite O limite informado na requisição, ou null para usar o padrão.
+     * @param padrao O limite utilizado quando nenhum for informado.
+     * @param maximo O maior limite aceito.
+     * @return O limite validado.
+     * @throws IllegalArgumentException Se o limite não for um número entre 1 e o máximo.
+     */
+    public int validarERetornarLimite(String limite, int padrao, int maximo) {
+        if (limite == null)
+            return padrao;
+
+        int valor;
+        try {
+            valor = Integer.parseInt(limite.trim());
+        } catch (NumberFormatException e) {
+            valor = 0;
+        }
+
+        if (valor < 1 || valor > maximo)
+            throw new IllegalArgumentException("O parâmetro 'limite' deve ser um número entre 1 e " + maximo + ".");
+        return valor;
+    }
+
+    /**
+     * Valida o texto de uma busca e o retorna sem espaços nas extremidades.
+     *
+     * @param texto   O texto informado no parâmetro "q".
+     * @param tamanho O tamanho máximo permitido.
+     * @return O texto validado.
+     * @throws IllegalArgumentException Se o texto estiver ausente, vazio ou for maior que o permitido.
+     */
+    public String validarERetornarTextoBusca(String texto, int tamanho) {
+        if (texto == null || texto.trim().isEmpty())
+            throw new IllegalArgumentException("O parâmetro 'q' é obrigatório.");
+
+        String valor = texto.trim();
+        if (valor.length() > tamanho)
+            throw new IllegalArgumentException("O parâmetro 'q' deve ter no máximo " + tamanho + " caracteres.");
+        return valor;
+    }
+
+    /**
+     * Valida o prefixo do autocompletar.
+     *
+     * @param prefixo O prefixo informado no parâmetro "prefixo".
+     * @param tamanho O tamanho máximo permitido.
+     * @return O prefixo validado.
+     * @throws IllegalArgumentException Se o prefixo estiver ausente, vazio ou for maior que o permitido.
+     */
+    public String validarERetornarPrefixo(String prefixo, int tamanho) {
+        if (prefixo == null || prefixo.trim().isEmpty())
+            throw new IllegalArgumentException("O parâmetro 'prefixo' é obrigatório.");
+        if (prefixo.length() > tamanho)
+            throw new IllegalArgumentException("O parâmetro 'prefixo' deve ter no máximo " + tamanho + " caracteres.");
+        return prefixo;
+    }
+
     /**
      * Valida se um produto está ativo.
      *
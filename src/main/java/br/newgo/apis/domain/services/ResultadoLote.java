@@ -0,0 +1,37 @@
+package br.newgo.apis.domain.services;
+
+/**
+ * Resultado do processamento de um item de um lote: o dado produzido em caso de sucesso
+ * ou a mensagem de erro que impediu o processamento do item.
+ *
+ * @param <T> O tipo do dado produzido pelo item.
+ */
+public class ResultadoLote<T> {
+    private final T dado;
+    private final String mensagemErro;
+
+    private ResultadoLote(T dado, String mensagemErro) {
+        this.dado = dado;
+        this.mensagemErro = mensagemErro;
+    }
+
+    public static <T> ResultadoLote<T> sucesso(T dado) {
+        return new ResultadoLote<>(dado, null);
+    }
+
+    public static <T> ResultadoLote<T> erro(String mensagemErro) {
+        return new ResultadoLote<>(null, mensagemErro);
+    }
+
+    public boolean isSucesso() {
+        return mensagemErro == null;
+    }
+
+    public T getDado() {
+        return dado;
+    }
+
+    public String getMensagemErro() {
+        return mensagemErro;
+    }
+}
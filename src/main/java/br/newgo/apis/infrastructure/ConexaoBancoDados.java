@@ -1,38 +1,199 @@
 package br.newgo.apis.infrastructure;
 
 import br.newgo.apis.infrastructure.config.ConfigProperties;
+import br.newgo.apis.infrastructure.pool.PoolConexoes;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * A classe ConexaoDB é responsável por estabelecer e gerenciar conexões com o banco de dados.
+ * As conexões são emprestadas de pools limitados, criados na primeira utilização.
+ *
+ * Escritas sempre usam o banco principal. Leituras podem ser roteadas para réplicas configuradas com
+ * as propriedades "db.replica.url[n]", escolhidas por rodízio ("round-robin") ou pela réplica menos
+ * carregada ("menos-carregada"). Durante a janela de leitura após escrita, as leituras voltam ao banco
+ * principal para que uma consulta logo após uma alteração enxergue o dado recém-gravado. A janela é de cada
+ * cliente: quem atende a requisição informa a última escrita conhecida do cliente, e as escritas de um
+ * cliente não desviam as leituras dos demais para o banco principal.
+ *
+ * Dentro de uma {@link UnidadeDeTrabalho}, leituras e escritas usam a conexão da transação em andamento.
  */
 public class ConexaoBancoDados {
+    private static final Logger LOGGER = Logger.getLogger(ConexaoBancoDados.class.getName());
+
+    private static volatile PoolConexoes pool;
+    private static volatile List<PoolConexoes> replicas;
+    private static final AtomicInteger proximaReplica = new AtomicInteger();
+    private static final ThreadLocal<Cliente> clienteAtual = new ThreadLocal<>();
+
+    static {
+        carregarDriverBancoDados();
+    }
 
     /**
-     * Obtém uma conexão com o banco de dados utilizando as configurações definidas no arquivo de propriedades.
+     * Obtém uma conexão do pool de conexões com o banco de dados principal, ou a conexão da unidade de
+     * trabalho em andamento. A conexão deve ser fechada após o uso, o que a devolve ao pool.
      *
      * @return Uma conexão com o banco de dados.
      * @throws RuntimeException Se ocorrer um erro ao obter a conexão.
      */
     public static Connection obterConexao() {
-        carregarDriverBancoDados();
+        Connection conexaoTransacao = UnidadeDeTrabalho.obterConexaoAtual();
+        if (conexaoTransacao != null)
+            return conexaoTransacao;
 
-        String url = ConfigProperties.getProperty("db.url");
-        String usuario = ConfigProperties.getProperty("db.usuario");
-        String senha = ConfigProperties.getProperty("db.senha");
+        return obterPool().obterConexao();
+    }
 
+    /**
+     * Obtém uma conexão para operações somente de leitura. Utiliza uma réplica quando houver réplicas
+     * configuradas e nenhuma escrita do cliente atual tiver ocorrido dentro da janela de leitura após escrita; caso a
+     * réplica escolhida esteja indisponível, utiliza o banco principal.
+     *
+     * @return Uma conexão com uma réplica ou com o banco principal.
+     * @throws RuntimeException Se ocorrer um erro ao obter a conexão.
+     */
+    public static Connection obterConexaoLeitura() {
+        List<PoolConexoes> disponiveis = obterReplicas();
+        if (disponiveis.isEmpty() || dentroDaJanelaDeEscrita() || UnidadeDeTrabalho.emAndamento())
+            return obterConexao();
+
+        PoolConexoes replica = selecionarReplica(disponiveis);
         try {
-            return DriverManager.getConnection(url, usuario, senha);
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao obter conexão com o banco de dados.", e);
+            return replica.obterConexao();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Réplica '" + replica.getNome() + "' indisponível, utilizando o banco principal.", e);
+            return obterConexao();
+        }
+    }
+
+    /**
+     * Registra que uma escrita foi confirmada no banco principal, abrindo a janela de leitura após escrita do
+     * cliente atendido pela thread atual a partir deste instante, e avisa quem atende o cliente. Dentro de uma
+     * unidade de trabalho, é chamado novamente na confirmação, que passa a ser o início da janela. Fora do
+     * atendimento de um cliente, não tem efeito.
+     */
+    public static void registrarEscrita() {
+        Cliente cliente = clienteAtual.get();
+        if (cliente == null)
+            return;
+
+        synchronized (cliente) {
+            cliente.ultimaEscritaMs = System.currentTimeMillis();
+            cliente.aoEscrever.accept(cliente.ultimaEscritaMs);
+        }
+    }
+
+    /**
+     * Associa a thread atual ao cliente atendido, cuja última escrita conhecida define a janela de leitura
+     * após escrita das leituras feitas por esta thread. Deve ser seguido de {@link #encerrarCliente()}.
+     *
+     * @param ultimaEscritaMs O instante da última escrita do cliente, em milissegundos desde a época, ou 0
+     *                        se não houver escrita conhecida.
+     * @param aoEscrever      Recebe o instante de cada escrita confirmada para o cliente, por exemplo para
+     *                        devolvê-lo na resposta. Chamado por uma thread de cada vez.
+     */
+    public static void iniciarCliente(long ultimaEscritaMs, LongConsumer aoEscrever) {
+        clienteAtual.set(new Cliente(Math.min(ultimaEscritaMs, System.currentTimeMillis()), aoEscrever));
+    }
+
+    /**
+     * Desassocia a thread atual do cliente atendido.
+     */
+    public static void encerrarCliente() {
+        clienteAtual.remove();
+    }
+
+    /**
+     * Envolve uma tarefa para que ela seja executada, em outra thread, associada ao cliente atendido pela
+     * thread atual: as escritas da tarefa abrem a janela desse cliente.
+     *
+     * @param tarefa A tarefa executada em nome do cliente.
+     * @param <T>    O tipo do resultado da tarefa.
+     * @return A tarefa associada ao cliente atual, ou a própria tarefa se não houver cliente.
+     */
+    public static <T> Callable<T> noClienteAtual(Callable<T> tarefa) {
+        Cliente cliente = clienteAtual.get();
+        if (cliente == null)
+            return tarefa;
+
+        return () -> {
+            Cliente anterior = clienteAtual.get();
+            clienteAtual.set(cliente);
+            try {
+                return tarefa.call();
+            } finally {
+                if (anterior == null)
+                    clienteAtual.remove();
+                else
+                    clienteAtual.set(anterior);
+            }
+        };
+    }
+
+    /**
+     * Obtém a duração da janela de leitura após escrita, "db.replica.janela-leitura-escrita-ms".
+     *
+     * @return A duração da janela, em milissegundos.
+     */
+    public static long getJanelaLeituraAposEscritaMs() {
+        return ConfigProperties.getLong("db.replica.janela-leitura-escrita-ms", 2000);
+    }
+
+    /**
+     * Obtém o pool de conexões, criando-o com as configurações definidas no arquivo de propriedades
+     * caso ainda não exista.
+     *
+     * @return O pool de conexões com o banco de dados.
+     */
+    public static PoolConexoes obterPool() {
+        PoolConexoes atual = pool;
+        if (atual == null) {
+            synchronized (ConexaoBancoDados.class) {
+                atual = pool;
+                if (atual == null) {
+                    atual = new PoolConexoes("principal",
+                            ConfigProperties.getProperty("db.url"),
+                            ConfigProperties.getProperty("db.usuario"),
+                            ConfigProperties.getProperty("db.senha"));
+                    pool = atual;
+                }
+            }
         }
+        return atual;
     }
 
     /**
-     * Fecha a conexão com o banco de dados.
+     * Obtém os pools das réplicas de leitura, criando-os a partir das propriedades "db.replica.url[n]"
+     * caso ainda não existam.
+     *
+     * @return Os pools das réplicas configuradas, ou uma lista vazia se não houver réplicas.
+     */
+    public static List<PoolConexoes> obterReplicas() {
+        List<PoolConexoes> atuais = replicas;
+        if (atuais == null) {
+            synchronized (ConexaoBancoDados.class) {
+                atuais = replicas;
+                if (atuais == null) {
+                    atuais = criarReplicas();
+                    replicas = atuais;
+                }
+            }
+        }
+        return atuais;
+    }
+
+    /**
+     * Fecha a conexão com o banco de dados, devolvendo-a ao pool.
      *
      * @param conexao A conexão a ser fechada.
      * @throws RuntimeException Se ocorrer um erro ao fechar a conexão.
@@ -47,6 +208,65 @@ public class ConexaoBancoDados {
         }
     }
 
+    /**
+     * Encerra os pools de conexões, fechando todas as conexões físicas ociosas.
+     */
+    public static synchronized void encerrar() {
+        if (pool != null) {
+            pool.encerrar();
+            pool = null;
+        }
+        if (replicas != null) {
+            replicas.forEach(PoolConexoes::encerrar);
+            replicas = null;
+        }
+    }
+
+    private static List<PoolConexoes> criarReplicas() {
+        String usuario = ConfigProperties.getProperty("db.replica.usuario", ConfigProperties.getProperty("db.usuario"));
+        String senha = ConfigProperties.getProperty("db.replica.senha", ConfigProperties.getProperty("db.senha"));
+
+        List<PoolConexoes> criadas = new ArrayList<>();
+        String url;
+        for (int i = 0; (url = ConfigProperties.getProperty("db.replica.url[" + i + "]", null)) != null; i++)
+            criadas.add(new PoolConexoes("replica-" + i, url, usuario, senha));
+
+        return Collections.unmodifiableList(criadas);
+    }
+
+    private static PoolConexoes selecionarReplica(List<PoolConexoes> disponiveis) {
+        if (ConfigProperties.getProperty("db.replica.estrategia", "round-robin").equalsIgnoreCase("menos-carregada")) {
+            PoolConexoes escolhida = disponiveis.get(0);
+            for (PoolConexoes replica : disponiveis)
+                if (carga(replica) < carga(escolhida))
+                    escolhida = replica;
+            return escolhida;
+        }
+        return disponiveis.get(Math.floorMod(proximaReplica.getAndIncrement(), disponiveis.size()));
+    }
+
+    private static int carga(PoolConexoes replica) {
+        return replica.getConexoesAtivas() + replica.getThreadsAguardando();
+    }
+
+    private static boolean dentroDaJanelaDeEscrita() {
+        Cliente cliente = clienteAtual.get();
+        return cliente != null && System.currentTimeMillis() - cliente.ultimaEscritaMs < getJanelaLeituraAposEscritaMs();
+    }
+
+    /**
+     * O cliente atendido por uma ou mais threads, com o instante da sua última escrita conhecida.
+     */
+    private static final class Cliente {
+        private volatile long ultimaEscritaMs;
+        private final LongConsumer aoEscrever;
+
+        private Cliente(long ultimaEscritaMs, LongConsumer aoEscrever) {
+            this.ultimaEscritaMs = ultimaEscritaMs;
+            this.aoEscrever = aoEscrever;
+        }
+    }
+
     private static void carregarDriverBancoDados() {
         try {
             Class.forName("org.postgresql.Driver");
@@ -54,4 +274,4 @@ public class ConexaoBancoDados {
             throw new RuntimeException("Driver do banco de dados não encontrado.", e);
         }
     }
-}
\ No newline at end of file
+}
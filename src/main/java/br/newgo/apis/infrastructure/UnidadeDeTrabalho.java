@@ -0,0 +1,213 @@
+package br.newgo.apis.infrastructure;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Unidade de trabalho vinculada à thread atual.
+ *
+ * Enquanto uma unidade de trabalho está em andamento, todas as conexões obtidas por {@link ConexaoBancoDados}
+ * são a mesma conexão do banco principal, com uma única transação. A transação é confirmada quando a operação
+ * mais externa termina normalmente e desfeita se ela lançar uma exceção. Unidades de trabalho aninhadas
+ * utilizam savepoints, de modo que a falha de uma operação interna desfaz apenas as suas próprias alterações.
+ */
+public class UnidadeDeTrabalho {
+    private static final ThreadLocal<UnidadeDeTrabalho> ATUAL = new ThreadLocal<>();
+
+    private final Connection conexao;
+    private final Connection conexaoCompartilhada;
+    private final List<Runnable> acoesFinais = new ArrayList<>();
+    private final List<Runnable> acoesConfirmacao = new ArrayList<>();
+
+    private UnidadeDeTrabalho(Connection conexao) {
+        this.conexao = conexao;
+        this.conexaoCompartilhada = criarConexaoCompartilhada(conexao);
+    }
+
+    /**
+     * Executa a operação dentro de uma unidade de trabalho, iniciando uma nova transação ou,
+     * se já houver uma em andamento, um savepoint dentro dela.
+     *
+     * @param operacao A operação a ser executada.
+     * @param <T>      O tipo do resultado da operação.
+     * @return O resultado da operação.
+     * @throws RuntimeException Se ocorrer um erro ao controlar a transação.
+     */
+    public static <T> T executar(Supplier<T> operacao) {
+        UnidadeDeTrabalho atual = ATUAL.get();
+        if (atual != null)
+            return atual.executarAninhada(operacao);
+
+        return new UnidadeDeTrabalho(iniciarTransacao()).executarRaiz(operacao);
+    }
+
+    /**
+     * Executa a operação dentro de uma unidade de trabalho.
+     *
+     * @param operacao A operação a ser executada.
+     * @see #executar(Supplier)
+     */
+    public static void executar(Runnable operacao) {
+        executar(() -> {
+            operacao.run();
+            return null;
+        });
+    }
+
+    /**
+     * Indica se a thread atual está executando dentro de uma unidade de trabalho.
+     *
+     * @return true se houver uma unidade de trabalho em andamento.
+     */
+    public static boolean emAndamento() {
+        return ATUAL.get() != null;
+    }
+
+    /**
+     * Registra uma ação a ser executada quando a unidade de trabalho em andamento terminar, seja com a
+     * confirmação ou com o desfazimento da transação. Sem unidade de trabalho em andamento, a ação é
+     * executada imediatamente.
+     *
+     * @param acao A ação a ser executada.
+     */
+    public static void aoFinalizar(Runnable acao) {
+        UnidadeDeTrabalho atual = ATUAL.get();
+        if (atual == null)
+            acao.run();
+        else
+            atual.acoesFinais.add(acao);
+    }
+
+    /**
+     * Registra uma ação a ser executada somente se a unidade de trabalho em andamento for confirmada.
+     * Ações registradas dentro de um savepoint desfeito são descartadas. Sem unidade de trabalho em
+     * andamento, a ação é executada imediatamente.
+     *
+     * @param acao A ação a ser executada após a confirmação.
+     */
+    public static void aoConfirmar(Runnable acao) {
+        UnidadeDeTrabalho atual = ATUAL.get();
+        if (atual == null)
+            acao.run();
+        else
+            atual.acoesConfirmacao.add(acao);
+    }
+
+    /**
+     * Obtém a conexão da unidade de trabalho em andamento. Fechar a conexão devolvida não tem efeito;
+     * ela é devolvida ao pool ao final da unidade de trabalho.
+     *
+     * @return A conexão da unidade de trabalho ou null se não houver nenhuma em andamento.
+     */
+    static Connection obterConexaoAtual() {
+        UnidadeDeTrabalho atual = ATUAL.get();
+        return atual == null ? null : atual.conexaoCompartilhada;
+    }
+
+    private static Connection iniciarTransacao() {
+        Connection conexao = ConexaoBancoDados.obterPool().obterConexao();
+        try {
+            conexao.setAutoCommit(false);
+            return conexao;
+        } catch (SQLException e) {
+            ConexaoBancoDados.fecharConexao(conexao);
+            throw new RuntimeException("Erro ao iniciar a transação: " + e.getMessage(), e);
+        }
+    }
+
+    private <T> T executarRaiz(Supplier<T> operacao) {
+        ATUAL.set(this);
+        try {
+            T resultado = operacao.get();
+            confirmar();
+            acoesConfirmacao.forEach(Runnable::run);
+            return resultado;
+        } catch (RuntimeException | Error e) {
+            desfazer(e);
+            throw e;
+        } finally {
+            ATUAL.remove();
+            ConexaoBancoDados.fecharConexao(conexao);
+            acoesFinais.forEach(Runnable::run);
+        }
+    }
+
+    private <T> T executarAninhada(Supplier<T> operacao) {
+        Savepoint savepoint;
+        try {
+            savepoint = conexao.setSavepoint();
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao criar savepoint: " + e.getMessage(), e);
+        }
+
+        int acoesAntesDoSavepoint = acoesConfirmacao.size();
+        T resultado;
+        try {
+            resultado = operacao.get();
+        } catch (RuntimeException | Error e) {
+            try {
+                conexao.rollback(savepoint);
+            } catch (SQLException erroRollback) {
+                e.addSuppressed(erroRollback);
+            }
+            acoesConfirmacao.subList(acoesAntesDoSavepoint, acoesConfirmacao.size()).clear();
+            throw e;
+        }
+
+        try {
+            conexao.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao liberar savepoint: " + e.getMessage(), e);
+        }
+        return resultado;
+    }
+
+    private void confirmar() {
+        try {
+            conexao.commit();
+            ConexaoBancoDados.registrarEscrita();
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao confirmar a transação: " + e.getMessage(), e);
+        }
+    }
+
+    private void desfazer(Throwable causa) {
+        try {
+            conexao.rollback();
+        } catch (SQLException e) {
+            causa.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Cria uma visão da conexão cujo close() é ignorado, para que os DAOs possam continuar usando
+     * try-with-resources sem devolver a conexão da transação ao pool.
+     */
+    private static Connection criarConexaoCompartilhada(Connection conexao) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, metodo, args) -> {
+                    switch (metodo.getName()) {
+                        case "close":
+                            return null;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            try {
+                                return metodo.invoke(conexao, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+}
@@ -0,0 +1,213 @@
+package br.newgo.apis.infrastructure.cache;
+
+import br.newgo.apis.infrastructure.config.ConfigProperties;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache em memória, concorrente e limitado, com leitura através do cache ("read-through").
+ *
+ * Quando o cache está cheio, a chave mais antiga é a candidata à remoção, mas só é removida se a nova chave
+ * tiver sido acessada com mais frequência do que ela (admissão TinyLFU, com frequências estimadas por um
+ * {@link EsbocoFrequencia}). Caso contrário, a nova chave não é armazenada e a antiga ganha uma segunda chance
+ * no fim da fila. Assim, uma varredura que lê cada chave uma única vez não expulsa as chaves mais acessadas.
+ *
+ * As entradas expiram após o TTL configurado. Invalidações feitas enquanto um valor está sendo carregado
+ * impedem que esse valor, possivelmente desatualizado, seja armazenado.
+ *
+ * As configurações são lidas do arquivo config.properties com o prefixo "cache.{nome}.":
+ * "habilitado", "tamanho-maximo" e "ttl-ms".
+ *
+ * @param <K> O tipo das chaves.
+ * @param <V> O tipo dos valores. Os valores armazenados são compartilhados e não devem ser alterados.
+ */
+public class CacheLimitado<K, V> {
+    private final String nome;
+    private final boolean habilitado;
+    private final int tamanhoMaximo;
+    private final long ttlNanos;
+
+    private final ConcurrentHashMap<K, Entrada<K, V>> entradas = new ConcurrentHashMap<>();
+    private final ArrayDeque<Entrada<K, V>> ordemInsercao = new ArrayDeque<>();
+    private final EsbocoFrequencia frequencias;
+    private final AtomicLong geracao = new AtomicLong();
+
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder faltas = new LongAdder();
+    private final LongAdder remocoes = new LongAdder();
+    private final LongAdder rejeicoes = new LongAdder();
+
+    /**
+     * Cria um cache com as configurações de prefixo "cache.{nome}.".
+     *
+     * @param nome O nome do cache, utilizado nas propriedades e em mensagens.
+     */
+    public CacheLimitado(String nome) {
+        String prefixo = "cache." + nome + ".";
+        this.nome = nome;
+        this.habilitado = ConfigProperties.getBoolean(prefixo + "habilitado", true);
+        this.tamanhoMaximo = Math.max(1, ConfigProperties.getInt(prefixo + "tamanho-maximo", 10000));
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ConfigProperties.getLong(prefixo + "ttl-ms", 60000));
+        this.frequencias = new EsbocoFrequencia(tamanhoMaximo);
+    }
+
+    /**
+     * Obtém o valor da chave, carregando-o e tentando armazená-lo quando não estiver no cache ou estiver expirado.
+     * Valores nulos devolvidos pelo carregador não são armazenados.
+     *
+     * @param chave      A chave do valor.
+     * @param carregador A função que obtém o valor da origem.
+     * @return O valor da chave, ou null se a origem não possuir valor para ela.
+     */
+    public V obter(K chave, Function<K, V> carregador) {
+        if (!habilitado)
+            return carregador.apply(chave);
+
+        frequencias.registrar(chave);
+        Entrada<K, V> entrada = entradas.get(chave);
+        if (entrada != null && entrada.expiraEm - System.nanoTime() > 0) {
+            acertos.increment();
+            return entrada.valor;
+        }
+
+        faltas.increment();
+        long geracaoCarga = geracao.get();
+        V valor = carregador.apply(chave);
+        if (valor != null)
+            armazenar(chave, valor, geracaoCarga);
+        return valor;
+    }
+
+    /**
+     * Remove a chave do cache.
+     *
+     * @param chave A chave a ser removida.
+     */
+    public void invalidar(K chave) {
+        geracao.incrementAndGet();
+        entradas.remove(chave);
+    }
+
+    /**
+     * Remove as chaves do cache.
+     *
+     * @param chaves As chaves a serem removidas.
+     */
+    public void invalidar(Collection<K> chaves) {
+        geracao.incrementAndGet();
+        chaves.forEach(entradas::remove);
+    }
+
+    /**
+     * Remove todas as entradas do cache.
+     */
+    public void invalidarTodos() {
+        geracao.incrementAndGet();
+        entradas.clear();
+        synchronized (ordemInsercao) {
+            ordemInsercao.clear();
+        }
+    }
+
+    private void armazenar(K chave, V valor, long geracaoCarga) {
+        Entrada<K, V> nova = new Entrada<>(chave, valor, System.nanoTime() + ttlNanos);
+
+        synchronized (ordemInsercao) {
+            if (geracao.get() != geracaoCarga)
+                return;
+
+            if (!entradas.containsKey(chave) && entradas.size() >= tamanhoMaximo && !abrirEspaco(chave)) {
+                rejeicoes.increment();
+                return;
+            }
+
+            entradas.put(chave, nova);
+            ordemInsercao.addLast(nova);
+
+            if (ordemInsercao.size() > 2 * tamanhoMaximo)
+                ordemInsercao.removeIf(entrada -> entradas.get(entrada.chave) != entrada);
+        }
+    }
+
+    /**
+     * Remove a entrada mais antiga se a chave candidata for mais frequente que ela.
+     * Deve ser chamado com o monitor de "ordemInsercao".
+     *
+     * @return true se uma entrada foi removida.
+     */
+    private boolean abrirEspaco(K candidata) {
+        Entrada<K, V> vitima;
+        while ((vitima = ordemInsercao.pollFirst()) != null) {
+            if (entradas.get(vitima.chave) != vitima)
+                continue;
+
+            if (vitima.expiraEm - System.nanoTime() <= 0
+                    || frequencias.frequencia(candidata) > frequencias.frequencia(vitima.chave)) {
+                entradas.remove(vitima.chave, vitima);
+                remocoes.increment();
+                return true;
+            }
+
+            ordemInsercao.addLast(vitima);
+            return false;
+        }
+        return true;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public int getTamanho() {
+        return entradas.size();
+    }
+
+    public int getTamanhoMaximo() {
+        return tamanhoMaximo;
+    }
+
+    public long getAcertos() {
+        return acertos.sum();
+    }
+
+    public long getFaltas() {
+        return faltas.sum();
+    }
+
+    public long getRemocoes() {
+        return remocoes.sum();
+    }
+
+    public long getRejeicoes() {
+        return rejeicoes.sum();
+    }
+
+    public double getTaxaAcerto() {
+        long total = getAcertos() + getFaltas();
+        return total == 0 ? 0 : (double) getAcertos() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheLimitado[%s: tamanho=%d/%d, acertos=%d, faltas=%d, remocoes=%d, rejeicoes=%d]",
+                nome, getTamanho(), tamanhoMaximo, getAcertos(), getFaltas(), getRemocoes(), getRejeicoes());
+    }
+
+    private static class Entrada<K, V> {
+        private final K chave;
+        private final V valor;
+        private final long expiraEm;
+
+        private Entrada(K chave, V valor, long expiraEm) {
+            this.chave = chave;
+            this.valor = valor;
+            this.expiraEm = expiraEm;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package br.newgo.apis.infrastructure.cache;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estimativa aproximada da frequência de acesso das chaves (count-min sketch), usada pela admissão TinyLFU.
+ *
+ * Cada chave incrementa um contador em cada uma das quatro linhas da tabela; a frequência estimada é o
+ * menor desses contadores. Os contadores saturam em 15 e, a cada "periodo" registros, todos são divididos
+ * por dois, de modo que acessos antigos perdem peso e chaves que deixaram de ser populares podem ser substituídas.
+ * A contagem dos registros é um único AtomicLong, pois ela é comparada com o período a cada acesso.
+ */
+class EsbocoFrequencia {
+    private static final int LINHAS = 4;
+    private static final int MAXIMO = 15;
+    private static final int[] SEMENTES = {0x97cb3127, 0xb9f3a8c5, 0x5ac6a9d3, 0xc2b2ae35};
+
+    private final AtomicIntegerArray contadores;
+    private final int mascara;
+    private final long periodo;
+    private final AtomicLong registros = new AtomicLong();
+
+    /**
+     * @param capacidade A quantidade máxima de entradas do cache que utiliza o esboço.
+     */
+    EsbocoFrequencia(int capacidade) {
+        int largura = Integer.highestOneBit(Math.max(16, capacidade) * 2 - 1);
+        this.contadores = new AtomicIntegerArray(largura * LINHAS);
+        this.mascara = largura - 1;
+        this.periodo = 10L * Math.max(16, capacidade);
+    }
+
+    /**
+     * Registra um acesso à chave.
+     *
+     * @param chave A chave acessada.
+     */
+    void registrar(Object chave) {
+        int hash = espalhar(chave.hashCode());
+        for (int linha = 0; linha < LINHAS; linha++)
+            incrementar(indice(hash, linha));
+
+        if (registros.incrementAndGet() >= periodo)
+            envelhecer();
+    }
+
+    /**
+     * Estima quantas vezes a chave foi acessada recentemente.
+     *
+     * @param chave A chave consultada.
+     * @return A frequência estimada, entre 0 e 15.
+     */
+    int frequencia(Object chave) {
+        int hash = espalhar(chave.hashCode());
+        int minimo = MAXIMO;
+        for (int linha = 0; linha < LINHAS; linha++)
+            minimo = Math.min(minimo, contadores.get(indice(hash, linha)));
+        return minimo;
+    }
+
+    private void incrementar(int indice) {
+        int atual;
+        do {
+            atual = contadores.get(indice);
+            if (atual >= MAXIMO)
+                return;
+        } while (!contadores.compareAndSet(indice, atual, atual + 1));
+    }
+
+    private synchronized void envelhecer() {
+        if (registros.get() < periodo)
+            return;
+
+        for (int i = 0; i < contadores.length(); i++)
+            contadores.set(i, contadores.get(i) >>> 1);
+        registros.set(0);
+    }
+
+    private int indice(int hash, int linha) {
+        int h = (hash ^ SEMENTES[linha]) * SEMENTES[linha];
+        return linha * (mascara + 1) + ((h ^ (h >>> 16)) & mascara);
+    }
+
+    private static int espalhar(int hash) {
+        hash ^= hash >>> 17;
+        hash *= 0xed5ad4bb;
+        hash ^= hash >>> 11;
+        return hash;
+    }
+}
@@ -0,0 +1,245 @@
+package br.newgo.apis.infrastructure.cache;
+
+import br.newgo.apis.infrastructure.config.ConfigProperties;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Filtro de Bloom com contadores, para responder rapidamente se um valor certamente não pertence a um conjunto.
+ *
+ * Cada valor incrementa "k" contadores de 4 bits, escolhidos por hash duplo. Uma resposta positiva é apenas
+ * provável e deve ser confirmada na origem. Uma resposta negativa é definitiva enquanto cada remoção corresponder
+ * a uma adição do mesmo valor: remover um valor que não foi adicionado pode zerar contadores compartilhados com
+ * outros valores e causar falso negativo. Adicionar o mesmo valor mais de uma vez é seguro, pois só produz falsos
+ * positivos. Um contador saturado em 15 nunca é decrementado.
+ *
+ * Enquanto o filtro não está carregado, {@link #podeConter(String)} não deve ser consultado e as remoções são
+ * ignoradas, pois o valor removido pode ainda não ter sido adicionado pela carga.
+ *
+ * As configurações são lidas do arquivo config.properties com o prefixo "filtro.{nome}.":
+ * "capacidade-esperada" e "taxa-falso-positivo".
+ */
+public class FiltroBloom {
+    private static final int BITS_CONTADOR = 4;
+    private static final int CONTADORES_POR_PALAVRA = Long.SIZE / BITS_CONTADOR;
+    private static final long MAXIMO = 15;
+
+    private final String nome;
+    private final long[] contadores;
+    private final int tamanho;
+    private final int funcoesHash;
+    private int ocupados;
+    private volatile boolean carregado;
+
+    private final LongAdder negativos = new LongAdder();
+    private final LongAdder positivos = new LongAdder();
+    private final LongAdder falsosPositivos = new LongAdder();
+
+    /**
+     * Cria um filtro dimensionado pelas configurações de prefixo "filtro.{nome}.".
+     *
+     * @param nome O nome do filtro, utilizado nas propriedades e em mensagens.
+     */
+    public FiltroBloom(String nome) {
+        String prefixo = "filtro." + nome + ".";
+        long capacidade = Math.max(1, ConfigProperties.getLong(prefixo + "capacidade-esperada", 1000000));
+        double taxa = Double.parseDouble(ConfigProperties.getProperty(prefixo + "taxa-falso-positivo", "0.01"));
+        if (!(taxa > 0 && taxa < 1))
+            throw new RuntimeException("Taxa de falso positivo inválida para o filtro '" + nome + "': " + taxa);
+
+        long bits = (long) Math.ceil(-capacidade * Math.log(taxa) / (Math.log(2) * Math.log(2)));
+        long palavras = Math.max(1, (bits + CONTADORES_POR_PALAVRA - 1) / CONTADORES_POR_PALAVRA);
+        if (palavras > Integer.MAX_VALUE / CONTADORES_POR_PALAVRA)
+            throw new RuntimeException("Capacidade esperada grande demais para o filtro '" + nome + "'.");
+
+        this.nome = nome;
+        this.contadores = new long[(int) palavras];
+        this.tamanho = contadores.length * CONTADORES_POR_PALAVRA;
+        this.funcoesHash = Math.max(1, (int) Math.round((double) tamanho / capacidade * Math.log(2)));
+    }
+
+    /**
+     * Esvazia o filtro e o preenche com os valores fornecidos pela fonte. Alterações feitas durante a carga
+     * são aplicadas normalmente; as remoções são ignoradas, o que só pode produzir falsos positivos.
+     * Enquanto a carga não termina, o filtro é considerado não carregado.
+     *
+     * @param fonte A função que entrega cada valor existente ao consumidor recebido.
+     * @throws RuntimeException Se a fonte falhar; nesse caso o filtro permanece não carregado.
+     */
+    public void carregar(Consumer<Consumer<String>> fonte) {
+        synchronized (this) {
+            carregado = false;
+            Arrays.fill(contadores, 0);
+            ocupados = 0;
+        }
+        fonte.accept(this::incluir);
+        carregado = true;
+    }
+
+    /**
+     * Marca o filtro como não carregado, por exemplo quando alterações podem ter sido perdidas.
+     */
+    public void descartar() {
+        carregado = false;
+    }
+
+    public boolean isCarregado() {
+        return carregado;
+    }
+
+    /**
+     * Adiciona um valor ao filtro.
+     *
+     * @param valor O valor adicionado.
+     */
+    public void adicionar(String valor) {
+        incluir(valor);
+    }
+
+    /**
+     * Remove um valor previamente adicionado. Ignorado enquanto o filtro não estiver carregado.
+     *
+     * @param valor O valor removido.
+     */
+    public synchronized void remover(String valor) {
+        if (!carregado)
+            return;
+
+        long hash = hash64(valor);
+        for (int i = 0; i < funcoesHash; i++) {
+            int indice = indice(hash, i);
+            long contador = ler(indice);
+            if (contador > 0 && contador < MAXIMO) {
+                escrever(indice, contador - 1);
+                if (contador == 1)
+                    ocupados--;
+            }
+        }
+    }
+
+    /**
+     * Verifica se o valor pode pertencer ao conjunto.
+     *
+     * @param valor O valor consultado.
+     * @return false se o valor certamente não pertence ao conjunto; true se provavelmente pertence.
+     */
+    public boolean podeConter(String valor) {
+        long hash = hash64(valor);
+        synchronized (this) {
+            for (int i = 0; i < funcoesHash; i++) {
+                if (ler(indice(hash, i)) == 0) {
+                    negativos.increment();
+                    return false;
+                }
+            }
+        }
+        positivos.increment();
+        return true;
+    }
+
+    /**
+     * Registra que uma resposta positiva de {@link #podeConter(String)} não foi confirmada na origem.
+     */
+    public void registrarFalsoPositivo() {
+        falsosPositivos.increment();
+    }
+
+    public long getNegativos() {
+        return negativos.sum();
+    }
+
+    public long getPositivos() {
+        return positivos.sum();
+    }
+
+    public long getFalsosPositivos() {
+        return falsosPositivos.sum();
+    }
+
+    /**
+     * Obtém a taxa de falso positivo observada: falsos positivos confirmados sobre o total de valores
+     * consultados que não pertenciam ao conjunto.
+     *
+     * @return A taxa observada, entre 0 e 1.
+     */
+    public double getTaxaFalsoPositivo() {
+        long falsos = getFalsosPositivos();
+        long total = falsos + getNegativos();
+        return total == 0 ? 0 : (double) falsos / total;
+    }
+
+    /**
+     * Estima a taxa de falso positivo atual a partir da fração de contadores ocupados.
+     *
+     * @return A taxa estimada, entre 0 e 1.
+     */
+    public synchronized double getTaxaFalsoPositivoEstimada() {
+        return Math.pow((double) ocupados / tamanho, funcoesHash);
+    }
+
+    /**
+     * Obtém a memória ocupada pelos contadores.
+     *
+     * @return O tamanho dos contadores em bytes.
+     */
+    public long getBytes() {
+        return (long) contadores.length * Long.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FiltroBloom[%s: contadores=%d, hashes=%d, bytes=%d, negativos=%d, positivos=%d, " +
+                        "falsosPositivos=%d, taxaFalsoPositivo=%.4f, taxaEstimada=%.4f]",
+                nome, tamanho, funcoesHash, getBytes(), getNegativos(), getPositivos(), getFalsosPositivos(),
+                getTaxaFalsoPositivo(), getTaxaFalsoPositivoEstimada());
+    }
+
+    private synchronized void incluir(String valor) {
+        long hash = hash64(valor);
+        for (int i = 0; i < funcoesHash; i++) {
+            int indice = indice(hash, i);
+            long contador = ler(indice);
+            if (contador < MAXIMO) {
+                escrever(indice, contador + 1);
+                if (contador == 0)
+                    ocupados++;
+            }
+        }
+    }
+
+    private long ler(int indice) {
+        int deslocamento = (indice % CONTADORES_POR_PALAVRA) * BITS_CONTADOR;
+        return (contadores[indice / CONTADORES_POR_PALAVRA] >>> deslocamento) & MAXIMO;
+    }
+
+    private void escrever(int indice, long valor) {
+        int palavra = indice / CONTADORES_POR_PALAVRA;
+        int deslocamento = (indice % CONTADORES_POR_PALAVRA) * BITS_CONTADOR;
+        contadores[palavra] = (contadores[palavra] & ~(MAXIMO << deslocamento)) | (valor << deslocamento);
+    }
+
+    /**
+     * Escolhe o i-ésimo contador do valor por hash duplo, a partir das duas metades do hash de 64 bits.
+     */
+    private int indice(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return Math.floorMod(h1 + i * h2, tamanho);
+    }
+
+    private static long hash64(String valor) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < valor.length(); i++) {
+            hash ^= valor.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
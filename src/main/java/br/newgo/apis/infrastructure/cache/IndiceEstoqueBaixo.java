@@ -0,0 +1,193 @@
+package br.newgo.apis.infrastructure.cache;
+
+import br.newgo.apis.infrastructure.entities.Produto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+/**
+ * Índice em memória dos produtos ativos com estoque abaixo do mínimo, ordenado pela falta de estoque.
+ *
+ * A ordem é a da sobra de estoque ("quantidade - estoque_min", sempre negativa no índice) e, em caso de
+ * empate, a do id; ou seja, os produtos com a maior falta vêm primeiro. É a mesma ordem da consulta de
+ * estoque baixo no banco, de modo que os cursores de paginação valem para ambos. A sobra é um decimal exato
+ * com duas casas, como as colunas numeric(13,2) do banco, para que a comparação com o cursor dê o mesmo
+ * resultado no índice e na consulta.
+ *
+ * O índice é carregado de uma vez e depois mantido a cada alteração de produto. As leituras não bloqueiam;
+ * as alterações são serializadas. Alterações recebidas durante a carga prevalecem sobre as linhas da carga.
+ */
+public class IndiceEstoqueBaixo {
+    private final ConcurrentSkipListMap<Posicao, Produto> ordenados = new ConcurrentSkipListMap<>();
+    private final Map<UUID, Posicao> posicoes = new ConcurrentHashMap<>();
+    private final Set<UUID> alteradosDuranteCarga = new HashSet<>();
+    private volatile boolean carregado;
+    private boolean carregando;
+
+    /**
+     * Carrega o índice a partir da fonte informada, descartando o conteúdo anterior.
+     * Enquanto a carga não termina, o índice é considerado não carregado.
+     *
+     * @param fonte A fonte dos produtos com estoque baixo, que entrega cada um ao consumidor recebido.
+     * @throws RuntimeException Se a fonte falhar; nesse caso o índice permanece não carregado.
+     */
+    public void carregar(Consumer<Consumer<Produto>> fonte) {
+        synchronized (this) {
+            carregado = false;
+            carregando = true;
+            alteradosDuranteCarga.clear();
+            ordenados.clear();
+            posicoes.clear();
+        }
+
+        boolean sucesso = false;
+        try {
+            fonte.accept(produto -> {
+                synchronized (this) {
+                    if (!alteradosDuranteCarga.contains(produto.getHash()))
+                        aplicar(produto);
+                }
+            });
+            sucesso = true;
+        } finally {
+            synchronized (this) {
+                carregando = false;
+                carregado = sucesso;
+                alteradosDuranteCarga.clear();
+            }
+        }
+    }
+
+    /**
+     * Marca o índice como não carregado, por exemplo quando alterações podem ter sido perdidas.
+     */
+    public synchronized void descartar() {
+        carregado = false;
+        ordenados.clear();
+        posicoes.clear();
+    }
+
+    /**
+     * Indica se o índice está completo e pode responder às consultas de estoque baixo.
+     *
+     * @return true se a última carga terminou com sucesso e o índice não foi descartado depois dela.
+     */
+    public boolean isCarregado() {
+        return carregado;
+    }
+
+    /**
+     * Aplica o novo estado de um produto: ele entra, muda de posição ou sai do índice conforme
+     * estiver ativo e com estoque abaixo do mínimo.
+     *
+     * @param produto O produto alterado.
+     */
+    public synchronized void atualizar(Produto produto) {
+        if (carregando)
+            alteradosDuranteCarga.add(produto.getHash());
+        aplicar(produto);
+    }
+
+    /**
+     * Remove um produto do índice.
+     *
+     * @param hash O hash do produto removido.
+     */
+    public synchronized void remover(UUID hash) {
+        if (carregando)
+            alteradosDuranteCarga.add(hash);
+        Posicao anterior = posicoes.remove(hash);
+        if (anterior != null)
+            ordenados.remove(anterior);
+    }
+
+    /**
+     * Busca até "limite" produtos posteriores à posição informada, na ordem do índice.
+     *
+     * @param sobraApos A sobra de estoque do último produto da página anterior.
+     * @param idApos    O id do último produto da página anterior.
+     * @param limite    A quantidade máxima de produtos.
+     * @return Os produtos da página.
+     */
+    public List<Produto> buscar(BigDecimal sobraApos, long idApos, int limite) {
+        List<Produto> produtos = new ArrayList<>(Math.min(limite, 256));
+        for (Produto produto : ordenados.tailMap(new Posicao(sobraApos, idApos), false).values()) {
+            if (produtos.size() == limite)
+                break;
+            produtos.add(produto);
+        }
+        return produtos;
+    }
+
+    /**
+     * Entrega todos os produtos do índice ao consumidor, na ordem do índice.
+     *
+     * @param consumidor O consumidor de cada produto.
+     */
+    public void percorrer(Consumer<Produto> consumidor) {
+        ordenados.values().forEach(consumidor);
+    }
+
+    public int getTamanho() {
+        return ordenados.size();
+    }
+
+    /**
+     * Calcula a sobra de estoque de um produto, critério de ordenação do índice.
+     *
+     * @param produto O produto.
+     * @return A quantidade menos o estoque mínimo, com duas casas decimais.
+     */
+    public static BigDecimal sobra(Produto produto) {
+        return BigDecimal.valueOf(produto.getQuantidade())
+                .subtract(BigDecimal.valueOf(produto.getEstoqueMin()))
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private void aplicar(Produto produto) {
+        Posicao anterior = posicoes.remove(produto.getHash());
+        if (anterior != null)
+            ordenados.remove(anterior);
+
+        if (Boolean.TRUE.equals(produto.isLativo()) && produto.getQuantidade() < produto.getEstoqueMin()) {
+            Posicao posicao = new Posicao(sobra(produto), produto.getId());
+            ordenados.put(posicao, produto);
+            posicoes.put(produto.getHash(), posicao);
+        }
+    }
+
+    private static final class Posicao implements Comparable<Posicao> {
+        private final BigDecimal sobra;
+        private final long id;
+
+        private Posicao(BigDecimal sobra, long id) {
+            this.sobra = sobra;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Posicao outra) {
+            int comparacao = sobra.compareTo(outra.sobra);
+            return comparacao != 0 ? comparacao : Long.compare(id, outra.id);
+        }
+
+        @Override
+        public boolean equals(Object outro) {
+            return outro instanceof Posicao && compareTo((Posicao) outro) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return sobra.stripTrailingZeros().hashCode() * 31 + Long.hashCode(id);
+        }
+    }
+}
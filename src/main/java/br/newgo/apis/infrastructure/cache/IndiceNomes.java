@@ -0,0 +1,151 @@
+package br.newgo.apis.infrastructure.cache;
+
+import br.newgo.apis.infrastructure.entities.NomeProduto;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Índice em memória dos nomes de produtos, ordenado pelo nome normalizado, para buscas por prefixo.
+ *
+ * Os nomes são normalizados sem acentos, em minúsculas e com espaços simples, de modo que "Café" e "cafe"
+ * correspondem ao mesmo prefixo. A chave de cada entrada é o nome normalizado seguido do hash do produto,
+ * o que mantém nomes que só diferem na acentuação como entradas distintas. Uma busca por prefixo é uma
+ * descida na lista ordenada seguida da leitura das entradas seguintes.
+ *
+ * O índice é carregado de uma vez e depois mantido a cada criação e exclusão. As leituras não bloqueiam;
+ * as alterações são serializadas. Alterações recebidas durante a carga prevalecem sobre as linhas da carga.
+ */
+public class IndiceNomes {
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACOS = Pattern.compile("\\s+");
+    private static final char SEPARADOR = '\u0000';
+
+    private final ConcurrentSkipListMap<String, NomeProduto> ordenados = new ConcurrentSkipListMap<>();
+    private final Map<UUID, String> chaves = new ConcurrentHashMap<>();
+    private final Set<UUID> alteradosDuranteCarga = new HashSet<>();
+    private volatile boolean carregado;
+    private boolean carregando;
+
+    /**
+     * Carrega o índice a partir da fonte informada, descartando o conteúdo anterior.
+     * Enquanto a carga não termina, o índice é considerado não carregado.
+     *
+     * @param fonte A fonte dos nomes, que entrega cada um ao consumidor recebido.
+     * @throws RuntimeException Se a fonte falhar; nesse caso o índice permanece não carregado.
+     */
+    public void carregar(Consumer<Consumer<NomeProduto>> fonte) {
+        synchronized (this) {
+            carregado = false;
+            carregando = true;
+            alteradosDuranteCarga.clear();
+            ordenados.clear();
+            chaves.clear();
+        }
+
+        boolean sucesso = false;
+        try {
+            fonte.accept(nome -> {
+                synchronized (this) {
+                    if (!alteradosDuranteCarga.contains(nome.getHash()))
+                        aplicar(nome);
+                }
+            });
+            sucesso = true;
+        } finally {
+            synchronized (this) {
+                carregando = false;
+                carregado = sucesso;
+                alteradosDuranteCarga.clear();
+            }
+        }
+    }
+
+    /**
+     * Marca o índice como não carregado, por exemplo quando alterações podem ter sido perdidas.
+     */
+    public synchronized void descartar() {
+        carregado = false;
+        ordenados.clear();
+        chaves.clear();
+    }
+
+    public boolean isCarregado() {
+        return carregado;
+    }
+
+    /**
+     * Inclui ou substitui o nome de um produto.
+     *
+     * @param nome O hash e o nome do produto.
+     */
+    public synchronized void adicionar(NomeProduto nome) {
+        if (carregando)
+            alteradosDuranteCarga.add(nome.getHash());
+        aplicar(nome);
+    }
+
+    /**
+     * Remove o nome de um produto.
+     *
+     * @param hash O hash do produto removido.
+     */
+    public synchronized void remover(UUID hash) {
+        if (carregando)
+            alteradosDuranteCarga.add(hash);
+        String anterior = chaves.remove(hash);
+        if (anterior != null)
+            ordenados.remove(anterior);
+    }
+
+    /**
+     * Busca até "limite" nomes que começam com o prefixo, comparados na forma normalizada e em ordem alfabética.
+     *
+     * @param prefixo O prefixo, já normalizado por {@link #normalizar(String)}.
+     * @param limite  A quantidade máxima de nomes.
+     * @return Os nomes encontrados.
+     */
+    public List<NomeProduto> buscar(String prefixo, int limite) {
+        List<NomeProduto> nomes = new ArrayList<>(Math.min(limite, 64));
+        for (Map.Entry<String, NomeProduto> entrada : ordenados.tailMap(prefixo, true).entrySet()) {
+            if (nomes.size() == limite || !entrada.getKey().startsWith(prefixo))
+                break;
+            nomes.add(entrada.getValue());
+        }
+        return nomes;
+    }
+
+    public int getTamanho() {
+        return ordenados.size();
+    }
+
+    /**
+     * Normaliza um texto para comparação por prefixo: sem acentos, em minúsculas, sem espaços nas
+     * extremidades e com sequências de espaços reduzidas a um único espaço.
+     *
+     * @param texto O texto original.
+     * @return O texto normalizado.
+     */
+    public static String normalizar(String texto) {
+        String semAcentos = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return ESPACOS.matcher(semAcentos.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    private void aplicar(NomeProduto nome) {
+        String chave = normalizar(nome.getNome()) + SEPARADOR + nome.getHash();
+        String anterior = chaves.put(nome.getHash(), chave);
+        if (anterior != null && !anterior.equals(chave))
+            ordenados.remove(anterior);
+        ordenados.put(chave, nome);
+    }
+}
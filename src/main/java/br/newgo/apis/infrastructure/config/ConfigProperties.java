@@ -38,4 +38,59 @@ public class ConfigProperties {
     public static String getProperty(String key) {
         return properties.getProperty(key);
     }
-}
\ No newline at end of file
+
+    /**
+     * Obtém o valor da propriedade associada à chave especificada ou o valor padrão informado.
+     *
+     * @param key          A chave da propriedade a ser obtida.
+     * @param valorPadrao  O valor retornado caso a chave não seja encontrada.
+     * @return O valor da propriedade ou o valor padrão.
+     */
+    public static String getProperty(String key, String valorPadrao) {
+        String valor = properties.getProperty(key);
+        return valor == null || valor.trim().isEmpty() ? valorPadrao : valor.trim();
+    }
+
+    /**
+     * Obtém o valor inteiro da propriedade associada à chave especificada.
+     *
+     * @param key         A chave da propriedade a ser obtida.
+     * @param valorPadrao O valor retornado caso a chave não seja encontrada.
+     * @return O valor inteiro da propriedade ou o valor padrão.
+     * @throws IllegalStateException Se o valor configurado não for um número inteiro.
+     */
+    public static int getInt(String key, int valorPadrao) {
+        return (int) getLong(key, valorPadrao);
+    }
+
+    /**
+     * Obtém o valor longo da propriedade associada à chave especificada.
+     *
+     * @param key         A chave da propriedade a ser obtida.
+     * @param valorPadrao O valor retornado caso a chave não seja encontrada.
+     * @return O valor longo da propriedade ou o valor padrão.
+     * @throws IllegalStateException Se o valor configurado não for um número inteiro.
+     */
+    public static long getLong(String key, long valorPadrao) {
+        String valor = getProperty(key, null);
+        if (valor == null)
+            return valorPadrao;
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Valor inválido para a propriedade '" + key + "': " + valor, e);
+        }
+    }
+
+    /**
+     * Obtém o valor booleano da propriedade associada à chave especificada.
+     *
+     * @param key         A chave da propriedade a ser obtida.
+     * @param valorPadrao O valor retornado caso a chave não seja encontrada.
+     * @return O valor booleano da propriedade ou o valor padrão.
+     */
+    public static boolean getBoolean(String key, boolean valorPadrao) {
+        String valor = getProperty(key, null);
+        return valor == null ? valorPadrao : Boolean.parseBoolean(valor);
+    }
+}
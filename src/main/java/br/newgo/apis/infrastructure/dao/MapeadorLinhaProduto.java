@@ -0,0 +1,73 @@
+package br.newgo.apis.infrastructure.dao;
+
+import br.newgo.apis.infrastructure.entities.Produto;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Converte as linhas de um ResultSet de produtos em objetos Produto.
+ *
+ * Os índices das colunas são resolvidos uma única vez, na criação do mapeador, e reaproveitados em todas
+ * as linhas. O hash e as datas são lidos diretamente nos tipos Java correspondentes, sem passar por
+ * String ou Timestamp.
+ */
+class MapeadorLinhaProduto {
+    private final ResultSet resultado;
+    private final int id;
+    private final int hash;
+    private final int nome;
+    private final int descricao;
+    private final int ean13;
+    private final int preco;
+    private final int quantidade;
+    private final int estoqueMin;
+    private final int dtCreate;
+    private final int dtUpdate;
+    private final int lativo;
+
+    /**
+     * Cria um mapeador para o ResultSet informado.
+     *
+     * @param resultado O ResultSet com as colunas da tabela de produtos.
+     * @throws SQLException Se alguma coluna de produto não estiver presente no ResultSet.
+     */
+    MapeadorLinhaProduto(ResultSet resultado) throws SQLException {
+        this.resultado = resultado;
+        this.id = resultado.findColumn("id");
+        this.hash = resultado.findColumn("hash");
+        this.nome = resultado.findColumn("nome");
+        this.descricao = resultado.findColumn("descricao");
+        this.ean13 = resultado.findColumn("ean13");
+        this.preco = resultado.findColumn("preco");
+        this.quantidade = resultado.findColumn("quantidade");
+        this.estoqueMin = resultado.findColumn("estoque_min");
+        this.dtCreate = resultado.findColumn("dtcreate");
+        this.dtUpdate = resultado.findColumn("dtupdate");
+        this.lativo = resultado.findColumn("lativo");
+    }
+
+    /**
+     * Converte a linha atual do ResultSet em um Produto.
+     *
+     * @return O produto da linha atual.
+     * @throws SQLException Se ocorrer um erro ao acessar os dados do ResultSet.
+     */
+    Produto mapear() throws SQLException {
+        Produto produto = new Produto(
+                resultado.getObject(hash, UUID.class),
+                resultado.getString(nome),
+                resultado.getString(descricao),
+                resultado.getString(ean13),
+                resultado.getDouble(preco),
+                resultado.getDouble(quantidade),
+                resultado.getDouble(estoqueMin),
+                resultado.getObject(dtCreate, LocalDateTime.class),
+                resultado.getObject(dtUpdate, LocalDateTime.class),
+                resultado.getBoolean(lativo));
+        produto.setId(resultado.getLong(id));
+        return produto;
+    }
+}
@@ -1,154 +1,579 @@
 package br.newgo.apis.infrastructure.dao;
 
+import br.newgo.apis.infrastructure.entities.NomeProduto;
+import br.newgo.apis.infrastructure.entities.OperacaoLote;
 import br.newgo.apis.infrastructure.entities.Produto;
+import br.newgo.apis.infrastructure.entities.ProdutoEncontrado;
 import br.newgo.apis.infrastructure.ConexaoBancoDados;
+import br.newgo.apis.infrastructure.UnidadeDeTrabalho;
+import br.newgo.apis.infrastructure.cache.CacheLimitado;
+import br.newgo.apis.infrastructure.cache.FiltroBloom;
+import br.newgo.apis.infrastructure.cache.IndiceEstoqueBaixo;
+import br.newgo.apis.infrastructure.cache.IndiceNomes;
+import br.newgo.apis.infrastructure.config.ConfigProperties;
 import br.newgo.apis.infrastructure.sql.ProdutoSQL;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
 
 /**
  * Classe responsável por interagir com o banco de dados para operações relacionadas à entidade Produto.
+ *
+ * As buscas por hash fora de uma unidade de trabalho passam por um cache limitado de produtos, compartilhado
+ * por todas as instâncias; as escritas removem do cache os produtos alterados.
+ *
+ * As buscas de estoque baixo são respondidas pelo {@link IndiceEstoqueBaixo} em memória quando ele estiver
+ * carregado. As escritas atualizam o índice após a confirmação da transação.
+ *
+ * Os nomes e códigos EAN-13 existentes são mantidos em um {@link FiltroBloom}; quando ele estiver carregado, a
+ * busca de duplicados só consulta o banco para os valores que o filtro indica como prováveis.
+ *
+ * O autocompletar por prefixo do nome é respondido pelo {@link IndiceNomes} em memória quando ele estiver
+ * carregado, atualizado a cada criação e exclusão confirmada.
  */
 public class ProdutoDAO {
+    private static final CacheLimitado<UUID, Produto> CACHE = new CacheLimitado<>("produtos");
+    private static final IndiceEstoqueBaixo INDICE_ESTOQUE_BAIXO = new IndiceEstoqueBaixo();
+    private static final FiltroBloom FILTRO_DUPLICADOS = new FiltroBloom("duplicados");
+    private static final Set<UUID> SINCRONIZADOS_NO_FILTRO = ConcurrentHashMap.newKeySet();
+    private static final IndiceNomes INDICE_NOMES = new IndiceNomes();
+    private static final String PREFIXO_NOME = "nome:";
+    private static final String PREFIXO_EAN13 = "ean13:";
+
     ProdutoSQL produtoSQL;
+    private final int tamanhoFetch;
 
     public ProdutoDAO() {
         produtoSQL = new ProdutoSQL();
+        tamanhoFetch = Math.max(1, ConfigProperties.getInt("db.fetch-size", 500));
     }
 
     /**
-     * Salva um produto no banco de dados e retorna o valor do hash gerado durante a inserção.
+     * Salva um produto no banco de dados e retorna o registro persistido, incluindo os valores gerados
+     * pelo banco (id e hash), sem uma nova consulta. A unicidade de nome e EAN-13 é garantida pelos
+     * índices únicos da tabela.
      *
      * @param produto O objeto Produto a ser salvo no banco de dados.
-     * @return O valor do hash gerado durante a inserção no banco de dados.
-     * @throws RuntimeException Se ocorrer um erro ao salvar o produto ou ao obter o hash gerado.
+     * @return O produto persistido, ou null se já existir um produto com o mesmo nome ou EAN-13.
+     * @throws RuntimeException Se ocorrer um erro ao salvar o produto.
      */
-    public String salvar(Produto produto) {
-        try (PreparedStatement stmt = ConexaoBancoDados.obterConexao().prepareStatement(produtoSQL.inserir(), Statement.RETURN_GENERATED_KEYS)) {
+    public Produto salvar(Produto produto) {
+        try (Connection conexao = ConexaoBancoDados.obterConexao();
+             PreparedStatement stmt = conexao.prepareStatement(produtoSQL.inserir())) {
 
             setDadosDoProdutoParaInsercao(produto, stmt);
-            int linhasAfetadas = stmt.executeUpdate();
+            Produto salvo = executarERetornar(stmt);
+            if (salvo != null)
+                registrarInseridos(Collections.singletonList(salvo));
+            return salvo;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao obter a conexão com o banco de dados: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Insere os produtos de um bloco em uma única instrução. Os nomes do bloco devem ser distintos.
+     *
+     * @param produtos Os produtos a serem inseridos.
+     * @return Os produtos persistidos, indexados pelo nome. Produtos cujo nome ou EAN-13 já existiam
+     * não são inseridos nem devolvidos.
+     * @throws RuntimeException Se ocorrer um erro ao inserir os produtos.
+     */
+    public Map<String, Produto> salvarEmLote(List<Produto> produtos) {
+        try (Connection conexao = ConexaoBancoDados.obterConexao();
+             PreparedStatement stmt = conexao.prepareStatement(produtoSQL.inserirEmLote())) {
 
-            if (linhasAfetadas > 0) {
-                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        return generatedKeys.getString(2);
-                    }
+            stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.setArray(2, conexao.createArrayOf("text", produtos.stream().map(Produto::getNome).toArray()));
+            stmt.setArray(3, conexao.createArrayOf("text", produtos.stream().map(Produto::getDescricao).toArray()));
+            stmt.setArray(4, conexao.createArrayOf("text", produtos.stream().map(Produto::getEan13).toArray()));
+            stmt.setArray(5, conexao.createArrayOf("numeric",
+                    produtos.stream().map(produto -> BigDecimal.valueOf(produto.getPreco())).toArray()));
+            stmt.setArray(6, conexao.createArrayOf("numeric",
+                    produtos.stream().map(produto -> BigDecimal.valueOf(produto.getQuantidade())).toArray()));
+            stmt.setArray(7, conexao.createArrayOf("numeric",
+                    produtos.stream().map(produto -> BigDecimal.valueOf(produto.getEstoqueMin())).toArray()));
+
+            Map<String, Produto> salvos = executarERetornarTodos(stmt, Produto::getNome);
+            registrarInseridos(salvos.values());
+            return salvos;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao salvar os produtos em lote: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Busca, em uma única consulta, quais dos nomes e códigos EAN-13 informados já pertencem a algum produto.
+     * Com o filtro de duplicados carregado, apenas os valores que o filtro indica como prováveis são
+     * consultados, e nenhuma consulta é feita se não houver nenhum.
+     *
+     * @param nomes  Os nomes a serem verificados.
+     * @param ean13s Os códigos EAN-13 a serem verificados.
+     * @return Os valores já existentes, nas chaves "nome" e "ean13".
+     * @throws RuntimeException Se ocorrer um erro ao executar a consulta.
+     */
+    public Map<String, Set<String>> buscarNomesEEan13Existentes(Collection<String> nomes, Collection<String> ean13s) {
+        Set<String> nomesExistentes = new HashSet<>();
+        Set<String> ean13sExistentes = new HashSet<>();
+        Map<String, Set<String>> existentes = new HashMap<>();
+        existentes.put("nome", nomesExistentes);
+        existentes.put("ean13", ean13sExistentes);
+
+        boolean filtrado = FILTRO_DUPLICADOS.isCarregado();
+        if (filtrado) {
+            nomes = filtrarProvaveis(nomes, PREFIXO_NOME);
+            ean13s = filtrarProvaveis(ean13s, PREFIXO_EAN13);
+            if (nomes.isEmpty() && ean13s.isEmpty())
+                return existentes;
+        }
+
+        try (Connection conexao = ConexaoBancoDados.obterConexao();
+             PreparedStatement stmt = conexao.prepareStatement(produtoSQL.buscarNomesEEan13Existentes())) {
+            stmt.setArray(1, conexao.createArrayOf("text", nomes.toArray()));
+            stmt.setArray(2, conexao.createArrayOf("text", ean13s.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    nomesExistentes.add(rs.getString("nome"));
+                    ean13sExistentes.add(rs.getString("ean13"));
                 }
             }
         } catch (SQLException e) {
-            throw new RuntimeException("Erro ao obter a conexão com o banco de dados: " + e.getMessage(), e);
+            throw new RuntimeException("Erro ao buscar produtos duplicados: " + e.getMessage(), e);
+        }
+
+        if (filtrado) {
+            nomes.stream().filter(nome -> !nomesExistentes.contains(nome))
+                    .forEach(nome -> FILTRO_DUPLICADOS.registrarFalsoPositivo());
+            ean13s.stream().filter(ean13 -> !ean13sExistentes.contains(ean13))
+                    .forEach(ean13 -> FILTRO_DUPLICADOS.registrarFalsoPositivo());
         }
-        throw new RuntimeException("Nenhuma linha foi alterada.");
+        return existentes;
     }
 
     /**
-     * Verifica se existe um produto com um determinado nome ou EAN13 no banco de dados.
+     * Carrega o filtro de duplicados com os nomes e códigos EAN-13 de todos os produtos, descartando o
+     * conteúdo anterior.
      *
-     * @param nome  O nome do produto a ser verificado.
-     * @param ean13 O código EAN13 do produto a ser verificado.
-     * @return True se um produto com o nome ou EAN13 especificado existe no banco de dados, caso contrário, False.
-     * @throws RuntimeException Se ocorrer um erro durante a execução da consulta no banco de dados.
+     * @throws RuntimeException Se ocorrer um erro ao buscar os produtos no banco de dados.
      */
-    public Boolean existeProdutoComNomeOuEan13(String nome, String ean13) {
-        try (PreparedStatement stmt = ConexaoBancoDados.obterConexao().prepareStatement(produtoSQL.existeProdutoComNomeOuEan13())) {
+    public void carregarFiltroDuplicados() {
+        SINCRONIZADOS_NO_FILTRO.clear();
+        FILTRO_DUPLICADOS.carregar(consumidor -> percorrer(produtoSQL.buscarTodos(), produto -> {
+            consumidor.accept(PREFIXO_NOME + produto.getNome());
+            consumidor.accept(PREFIXO_EAN13 + produto.getEan13());
+        }));
+    }
 
-            stmt.setString(1, nome);
-            stmt.setString(2, ean13);
+    /**
+     * Indica se o filtro de duplicados está carregado, isto é, se {@link #buscarNomesEEan13Existentes}
+     * evita a consulta ao banco para valores certamente inexistentes.
+     *
+     * @return true se o filtro estiver carregado.
+     */
+    public boolean isFiltroDuplicadosCarregado() {
+        return FILTRO_DUPLICADOS.isCarregado();
+    }
 
-            try (ResultSet resultSet = stmt.executeQuery()) {
-                if (resultSet.next()) {
-                    int count = resultSet.getInt(1);
-                    return count > 0;
+    /**
+     * Obtém o filtro de duplicados compartilhado pelos DAOs, para consulta de métricas.
+     *
+     * @return O filtro de nomes e códigos EAN-13.
+     */
+    public static FiltroBloom obterFiltroDuplicados() {
+        return FILTRO_DUPLICADOS;
+    }
+
+    /**
+     * Obtém o cache de produtos compartilhado pelos DAOs, para consulta de métricas ou invalidação externa.
+     *
+     * @return O cache de produtos.
+     */
+    public static CacheLimitado<UUID, Produto> obterCache() {
+        return CACHE;
+    }
+
+    /**
+     * Carrega o índice de estoque baixo a partir do banco, descartando o conteúdo anterior.
+     *
+     * @throws RuntimeException Se ocorrer um erro ao buscar os produtos no banco de dados.
+     */
+    public void carregarIndiceEstoqueBaixo() {
+        INDICE_ESTOQUE_BAIXO.carregar(consumidor ->
+                percorrer(produtoSQL.buscarTodosComEstoqueBaixo(), consumidor));
+    }
+
+    /**
+     * Carrega o índice de nomes a partir do banco, descartando o conteúdo anterior.
+     *
+     * @throws RuntimeException Se ocorrer um erro ao buscar os produtos no banco de dados.
+     */
+    public void carregarIndiceNomes() {
+        INDICE_NOMES.carregar(consumidor -> percorrer(produtoSQL.buscarTodos(),
+                produto -> consumidor.accept(new NomeProduto(produto.getHash(), produto.getNome()))));
+    }
+
+    /**
+     * Descarta os índices e o filtro de duplicados, que passam a ser respondidos pelo banco até a próxima
+     * carga. Utilizado quando as alterações feitas por outras instâncias podem deixar de ser recebidas.
+     */
+    public void descartarIndices() {
+        INDICE_ESTOQUE_BAIXO.descartar();
+        INDICE_NOMES.descartar();
+        FILTRO_DUPLICADOS.descartar();
+    }
+
+    /**
+     * Atualiza os produtos nos índices em memória com o estado atual do banco. Utilizado quando os produtos
+     * foram alterados por outra instância da aplicação. Os produtos são lidos em uma única consulta ao banco
+     * principal, pois uma réplica atrasada poderia devolver o estado anterior à alteração notificada.
+     * Os nomes e códigos EAN-13 de cada produto são contados no filtro de duplicados uma vez por carga do
+     * filtro, mesmo que o produto já tenha sido contado pela carga: contar a mais só produz falsos positivos,
+     * enquanto um valor não contado poderia chegar a zero com a exclusão de outro valor que compartilha os
+     * mesmos contadores. Os valores dos produtos removidos por outras instâncias permanecem no filtro.
+     *
+     * @param hashes Os hashes dos produtos alterados.
+     * @throws RuntimeException Se ocorrer um erro ao buscar os produtos no banco de dados.
+     */
+    public void sincronizarIndices(Collection<UUID> hashes) {
+        if (hashes.isEmpty() || (!INDICE_ESTOQUE_BAIXO.isCarregado() && !INDICE_NOMES.isCarregado()
+                && !FILTRO_DUPLICADOS.isCarregado()))
+            return;
+
+        Map<UUID, Produto> atuais = new HashMap<>();
+        try (Connection conexao = ConexaoBancoDados.obterConexao();
+             PreparedStatement stmt = conexao.prepareStatement(produtoSQL.buscarPorHashes())) {
+            stmt.setArray(1, conexao.createArrayOf("uuid", hashes.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                MapeadorLinhaProduto mapeador = new MapeadorLinhaProduto(rs);
+                while (rs.next()) {
+                    Produto produto = mapeador.mapear();
+                    atuais.put(produto.getHash(), produto);
                 }
-            } catch (SQLException e) {
-                throw new RuntimeException("Erro ao executar a consulta: " + e.getMessage(), e);
             }
         } catch (SQLException e) {
-            throw new RuntimeException("Erro ao obter a conexão com o banco de dados: " + e.getMessage(), e);
+            throw new RuntimeException("Erro ao buscar os produtos alterados: " + e.getMessage(), e);
+        }
+
+        for (UUID hash : hashes) {
+            Produto produto = atuais.get(hash);
+            if (produto == null) {
+                INDICE_ESTOQUE_BAIXO.remover(hash);
+                INDICE_NOMES.remover(hash);
+                SINCRONIZADOS_NO_FILTRO.remove(hash);
+            } else {
+                INDICE_ESTOQUE_BAIXO.atualizar(produto);
+                INDICE_NOMES.adicionar(new NomeProduto(produto.getHash(), produto.getNome()));
+                if (SINCRONIZADOS_NO_FILTRO.add(hash)) {
+                    FILTRO_DUPLICADOS.adicionar(PREFIXO_NOME + produto.getNome());
+                    FILTRO_DUPLICADOS.adicionar(PREFIXO_EAN13 + produto.getEan13());
+                }
+            }
+        }
+    }
+
+    /**
+     * Busca até "limite" produtos cujo nome começa com o prefixo. Com o índice de nomes carregado, a
+     * comparação ignora acentos, maiúsculas e espaços repetidos; sem ele, a busca vai ao banco e ignora
+     * apenas maiúsculas.
+     *
+     * @param prefixo O prefixo do nome.
+     * @param limite  A quantidade máxima de produtos.
+     * @return O hash e o nome dos produtos encontrados, em ordem alfabética.
+     * @throws RuntimeException Se ocorrer um erro ao buscar os produtos no banco de dados.
+     */
+    public List<NomeProduto> buscarNomesPorPrefixo(String prefixo, int limite) {
+        if (INDICE_NOMES.isCarregado())
+            return INDICE_NOMES.buscar(IndiceNomes.normalizar(prefixo), limite);
+
+        List<NomeProduto> nomes = new ArrayList<>();
+        try (Connection conexao = ConexaoBancoDados.obterConexaoLeitura();
+             PreparedStatement stmt = conexao.prepareStatement(produtoSQL.buscarNomesPorPrefixo())) {
+            stmt.setString(1, prefixo.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+            stmt.setInt(2, limite);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next())
+                    nomes.add(new NomeProduto(rs.getObject(1, UUID.class), rs.getString(2)));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar nomes de produtos: " + e.getMessage(), e);
         }
-        return false;
+        return nomes;
+    }
+
+    /**
+     * Obtém o índice de estoque baixo compartilhado pelos DAOs.
+     *
+     * @return O índice de estoque baixo.
+     */
+    public static IndiceEstoqueBaixo obterIndiceEstoqueBaixo() {
+        return INDICE_ESTOQUE_BAIXO;
     }
 
     /**
-     * Busca um produto no banco de dados com base no seu hash (UUID).
+     * Busca um produto com base no seu hash (UUID), utilizando o cache de produtos. Dentro de uma unidade
+     * de trabalho a busca vai sempre ao banco, para enxergar as alterações ainda não confirmadas.
+     * As faltas no cache são lidas do banco principal, e não de uma réplica: uma réplica atrasada
+     * devolveria o estado anterior a uma escrita já confirmada, que ficaria em cache por todo o TTL.
+     * O produto devolvido pode ser compartilhado com outras requisições e não deve ser alterado.
      *
      * @param hash O UUID que identifica exclusivamente o produto a ser buscado.
      * @return Um objeto Produto representando o produto encontrado, ou null se não encontrado.
      * @throws RuntimeException Se ocorrer um erro ao executar a consulta SQL ou ao obter a conexão com o banco de dados.
      */
     public Produto buscarPorHash(UUID hash) {
-        try (PreparedStatement stmt = ConexaoBancoDados.obterConexao().prepareStatement(produtoSQL.buscarPor("hash"))) {
+        if (UnidadeDeTrabalho.emAndamento())
+            return buscarPorHashNoBanco(hash);
+
+        return CACHE.obter(hash, this::buscarPorHashNoBanco);
+    }
+
+    private Produto buscarPorHashNoBanco(UUID hash) {
+        try (Connection conexao = ConexaoBancoDados.obterConexao()) {
+            return buscarUm(conexao, produtoSQL.buscarPor("hash"), hash);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao obter a conexão com o banco de dados: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Busca um produto pelo hash no banco principal, bloqueando a linha até o fim da transação em andamento.
+     * Deve ser utilizado dentro de uma unidade de trabalho, antes de alterar o produto.
+     *
+     * @param hash O UUID que identifica exclusivamente o produto a ser buscado.
+     * @return Um objeto Produto representando o produto encontrado, ou null se não encontrado.
+     * @throws RuntimeException Se ocorrer um erro ao executar a consulta SQL ou ao obter a conexão com o banco de dados.
+     */
+    public Produto buscarPorHashParaAtualizacao(UUID hash) {
+        try (Connection conexao = ConexaoBancoDados.obterConexao()) {
+            return buscarUm(conexao, produtoSQL.buscarPorHashParaAtualizacao(), hash);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao obter a conexão com o banco de dados: " + e.getMessage(), e);
+        }
+    }
+
+    private Produto buscarUm(Connection conexao, String sql, UUID hash) throws SQLException {
+        try (PreparedStatement stmt = conexao.prepareStatement(sql)) {
             stmt.setObject(1, hash);
 
             try (ResultSet resultado = stmt.executeQuery()) {
                 if (resultado.next())
-                    return converterResultSetParaProduto(resultado);
+                    return new MapeadorLinhaProduto(resultado).mapear();
                 else
                     return null;
             } catch (SQLException e) {
                 throw new RuntimeException("Erro ao executar a consulta: " + e.getMessage(), e);
             }
+        }
+    }
+
+    /**
+     * Busca a versão atual do catálogo de produtos.
+     *
+     * @return A versão do catálogo.
+     * @throws RuntimeException Se ocorrer um erro ao executar a consulta.
+     */
+    public long buscarVersaoCatalogo() {
+        try (Connection conexao = ConexaoBancoDados.obterConexaoLeitura()) {
+            return buscarVersaoCatalogo(conexao);
         } catch (SQLException e) {
-            throw new RuntimeException("Erro ao obter a conexão com o banco de dados: " + e.getMessage(), e);
+            throw new RuntimeException("Erro ao buscar a versão do catálogo: " + e.getMessage(), e);
+        }
+    }
+
+    private long buscarVersaoCatalogo(Connection conexao) throws SQLException {
+        try (PreparedStatement stmt = conexao.prepareStatement(produtoSQL.buscarVersaoCatalogo());
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
         }
     }
 
     /**
-     * Busca todos os produtos no banco de dados.
+     * Busca todos os produtos no banco de dados, entregando cada um ao consumidor assim que é lido.
      *
-     * @return Uma lista de objetos Produto representando os produtos encontrados.
+     * @param versao     Recebe a versão do catálogo antes do primeiro produto, ou null se não for necessária.
+     * @param consumidor O consumidor de cada produto encontrado.
      * @throws RuntimeException Se ocorrer um erro ao buscar os produtos no banco de dados.
+     * @see #percorrerComVersao(String, LongConsumer, Consumer, Object...)
      */
-    public List<Produto> buscarTodos() {
-        List<Produto> produtos = new ArrayList<>();
+    public void buscarTodos(LongConsumer versao, Consumer<Produto> consumidor) {
+        percorrerComVersao(produtoSQL.buscarTodos(), versao, consumidor);
+    }
+
+    /**
+     * Busca todos os produtos no banco de dados com base no status "lativo", entregando cada um
+     * ao consumidor assim que é lido.
+     *
+     * @param lativo     O status a ser considerado na busca.
+     * @param versao     Recebe a versão do catálogo antes do primeiro produto, ou null se não for necessária.
+     * @param consumidor O consumidor de cada produto encontrado.
+     * @throws RuntimeException Se ocorrer um erro ao buscar os produtos no banco de dados.
+     */
+    public void buscarTodosPorStatus(Boolean lativo, LongConsumer versao, Consumer<Produto> consumidor) {
+        percorrerComVersao(produtoSQL.buscarTodosPorStatus(), versao, consumidor, lativo);
+    }
 
-        try (PreparedStatement stmt = ConexaoBancoDados.obterConexao().prepareStatement(produtoSQL.buscarTodos())) {
+    /**
+     * Busca todos os produtos ativos com estoque abaixo do mínimo, da maior para a menor falta de estoque.
+     *
+     * @param consumidor O consumidor de cada produto encontrado.
+     * @throws RuntimeException Se ocorrer um erro ao buscar os produtos no banco de dados.
+     */
+    public void buscarTodosComEstoqueBaixo(Consumer<Produto> consumidor){
+        if (INDICE_ESTOQUE_BAIXO.isCarregado())
+            INDICE_ESTOQUE_BAIXO.percorrer(consumidor);
+        else
+            percorrer(produtoSQL.buscarTodosComEstoqueBaixo(), consumidor);
+    }
+
+    /**
+     * Busca até "limite" produtos com id maior que o informado, em ordem de id.
+     *
+     * @param aposId O último id da página anterior, ou 0 para a primeira página.
+     * @param limite A quantidade máxima de produtos.
+     * @return Os produtos da página.
+     * @throws RuntimeException Se ocorrer um erro ao buscar os produtos no banco de dados.
+     */
+    public List<Produto> buscarPagina(long aposId, int limite) {
+        return buscarLista(produtoSQL.buscarPagina(), aposId, limite);
+    }
+
+    /**
+     * Busca até "limite" produtos com o status informado e id maior que o informado, em ordem de id.
+     *
+     * @param lativo O status a ser considerado na busca.
+     * @param aposId O último id da página anterior, ou 0 para a primeira página.
+     * @param limite A quantidade máxima de produtos.
+     * @return Os produtos da página.
+     * @throws RuntimeException Se ocorrer um erro ao buscar os produtos no banco de dados.
+     */
+    public List<Produto> buscarPaginaPorStatus(Boolean lativo, long aposId, int limite) {
+        return buscarLista(produtoSQL.buscarPaginaPorStatus(), lativo, aposId, limite);
+    }
+
+    /**
+     * Busca até "limite" produtos ativos com estoque abaixo do mínimo posteriores ao produto informado,
+     * da maior para a menor falta de estoque.
+     *
+     * @param sobraApos A sobra de estoque (quantidade - estoque mínimo) do último produto da página anterior.
+     * @param idApos    O id do último produto da página anterior.
+     * @param limite    A quantidade máxima de produtos.
+     * @return Os produtos da página.
+     * @throws RuntimeException Se ocorrer um erro ao buscar os produtos no banco de dados.
+     */
+    public List<Produto> buscarPaginaComEstoqueBaixo(BigDecimal sobraApos, long idApos, int limite) {
+        if (INDICE_ESTOQUE_BAIXO.isCarregado())
+            return INDICE_ESTOQUE_BAIXO.buscar(sobraApos, idApos, limite);
+
+        return buscarLista(produtoSQL.buscarPaginaComEstoqueBaixo(), sobraApos, idApos, limite);
+    }
+
+    /**
+     * Busca até "limite" produtos cujo nome ou descrição correspondam ao texto, da maior para a menor
+     * relevância, posteriores ao produto informado.
+     *
+     * @param texto          O texto buscado, na sintaxe de busca web do PostgreSQL.
+     * @param relevanciaApos A relevância do último produto da página anterior.
+     * @param idApos         O id do último produto da página anterior.
+     * @param limite         A quantidade máxima de produtos.
+     * @return Os produtos encontrados, com suas relevâncias.
+     * @throws RuntimeException Se ocorrer um erro ao executar a busca.
+     */
+    public List<ProdutoEncontrado> buscarTexto(String texto, float relevanciaApos, long idApos, int limite) {
+        List<ProdutoEncontrado> encontrados = new ArrayList<>();
+
+        try (Connection conexao = ConexaoBancoDados.obterConexaoLeitura();
+             PreparedStatement stmt = conexao.prepareStatement(produtoSQL.buscarTexto())) {
+            stmt.setString(1, texto);
+            stmt.setFloat(2, relevanciaApos);
+            stmt.setFloat(3, relevanciaApos);
+            stmt.setLong(4, idApos);
+            stmt.setInt(5, limite);
             try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    produtos.add(converterResultSetParaProduto(rs));
-                }
+                MapeadorLinhaProduto mapeador = new MapeadorLinhaProduto(rs);
+                int relevancia = rs.findColumn("relevancia");
+                while (rs.next())
+                    encontrados.add(new ProdutoEncontrado(mapeador.mapear(), rs.getFloat(relevancia)));
             }
         } catch (SQLException e) {
-            throw new RuntimeException("Erro ao buscar todos os produtos no banco de dados.", e);
+            throw new RuntimeException("Erro ao buscar produtos por texto: " + e.getMessage(), e);
         }
-        return produtos;
+        return encontrados;
     }
 
     /**
-     * Busca todos os produtos no banco de dados com base no status "lativo".
+     * Executa uma consulta lendo o resultado em partes de "db.fetch-size" linhas, sem manter a lista
+     * de produtos em memória. O driver do PostgreSQL só usa um cursor no servidor quando o autocommit
+     * está desligado, por isso a consulta roda em uma transação somente de leitura, encerrada ao final.
      *
-     * @param lativo O status a ser considerado na busca.
-     * @return Uma lista de objetos Produto representando os produtos encontrados.
-     * @throws RuntimeException Se ocorrer um erro ao buscar os produtos no banco de dados.
+     * @param sql        A consulta a ser executada.
+     * @param consumidor O consumidor de cada produto lido.
+     * @param parametros Os parâmetros da consulta.
+     * @throws RuntimeException Se ocorrer um erro ao executar a consulta.
      */
-    public List<Produto> buscarTodosPorStatus(Boolean lativo) {
-        List<Produto> produtos = new ArrayList<>();
+    private void percorrer(String sql, Consumer<Produto> consumidor, Object... parametros) {
+        percorrerComVersao(sql, null, consumidor, parametros);
+    }
 
-        try (PreparedStatement stmt = ConexaoBancoDados.obterConexao().prepareStatement(produtoSQL.buscarPor("lativo"))) {
-            stmt.setBoolean(1, lativo);
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    produtos.add(converterResultSetParaProduto(rs));
+    /**
+     * Executa uma consulta como {@link #percorrer(String, Consumer, Object...)}, lendo antes, na mesma
+     * conexão, a versão do catálogo. Como a versão é lida antes dos produtos, os produtos entregues são
+     * sempre ao menos tão recentes quanto ela, mesmo quando a conexão é de uma réplica.
+     *
+     * @param versao Recebe a versão do catálogo antes do primeiro produto, ou null se não for necessária.
+     */
+    private void percorrerComVersao(String sql, LongConsumer versao, Consumer<Produto> consumidor, Object... parametros) {
+        try (Connection conexao = ConexaoBancoDados.obterConexaoLeitura()) {
+            boolean autoCommit = conexao.getAutoCommit();
+            conexao.setAutoCommit(false);
+            try (PreparedStatement stmt = conexao.prepareStatement(sql)) {
+                if (versao != null)
+                    versao.accept(buscarVersaoCatalogo(conexao));
+                stmt.setFetchSize(tamanhoFetch);
+                for (int i = 0; i < parametros.length; i++)
+                    stmt.setObject(i + 1, parametros[i]);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    MapeadorLinhaProduto mapeador = new MapeadorLinhaProduto(rs);
+                    while (rs.next())
+                        consumidor.accept(mapeador.mapear());
+                }
+            } finally {
+                if (autoCommit) {
+                    conexao.rollback();
+                    conexao.setAutoCommit(true);
                 }
             }
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar todos os produtos no banco de dados.", e);
         }
-        return produtos;
     }
 
-    public List<Produto> buscarTodosComEstoqueBaixo(){
+    private List<Produto> buscarLista(String sql, Object... parametros) {
         List<Produto> produtos = new ArrayList<>();
 
-        try (PreparedStatement stmt = ConexaoBancoDados.obterConexao().prepareStatement(produtoSQL.buscarTodosComEstoqueBaixo())) {
+        try (Connection conexao = ConexaoBancoDados.obterConexaoLeitura();
+             PreparedStatement stmt = conexao.prepareStatement(sql)) {
+            for (int i = 0; i < parametros.length; i++)
+                stmt.setObject(i + 1, parametros[i]);
+
             try (ResultSet rs = stmt.executeQuery()) {
+                MapeadorLinhaProduto mapeador = new MapeadorLinhaProduto(rs);
                 while (rs.next()) {
-                    produtos.add(converterResultSetParaProduto(rs));
+                    produtos.add(mapeador.mapear());
                 }
             }
         } catch (SQLException e) {
@@ -157,32 +582,52 @@ public class ProdutoDAO {
         return produtos;
     }
 
-    public void atualizarStatusLativo(Boolean lativo, UUID hash){
-        try (PreparedStatement stmt = ConexaoBancoDados.obterConexao().prepareStatement(produtoSQL.atualizarAtributo("lativo"))) {
+    /**
+     * Atualiza o status "lativo" de um produto.
+     *
+     * @param lativo O novo status do produto.
+     * @param hash   O UUID do produto a ser atualizado.
+     * @return O produto atualizado, ou null se nenhum produto possuir o hash informado.
+     * @throws RuntimeException Se ocorrer um erro ao obter a conexão com o banco de dados ou ao executar a atualização.
+     */
+    public Produto atualizarStatusLativo(Boolean lativo, UUID hash){
+        try (Connection conexao = ConexaoBancoDados.obterConexao();
+             PreparedStatement stmt = conexao.prepareStatement(produtoSQL.atualizarAtributo("lativo"))) {
 
             stmt.setBoolean(1, lativo);
             stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setObject(3, hash);
 
-            if (stmt.executeUpdate() == 0)
-                throw new RuntimeException("A operação de atualizar o produto falhou. Nenhuma linha foi afetada.");
-
+            Produto produto = executarERetornar(stmt);
+            invalidarCache(Collections.singletonList(hash));
+            atualizarIndice(Collections.singletonList(produto));
+            return produto;
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao obter a conexão com o banco de dados: " + e.getMessage(), e);
         }
     }
 
-    public void atualizarAtributoDouble(String atributo, double valor, UUID hash) {
-        try (PreparedStatement stmt = ConexaoBancoDados.obterConexao().prepareStatement(produtoSQL.atualizarAtributo(atributo))) {
+    /**
+     * Atualiza um atributo numérico de um produto.
+     *
+     * @param atributo A coluna a ser atualizada.
+     * @param valor    O novo valor.
+     * @param hash     O UUID do produto a ser atualizado.
+     * @return O produto atualizado, ou null se nenhum produto possuir o hash informado.
+     * @throws RuntimeException Se ocorrer um erro ao obter a conexão com o banco de dados ou ao executar a atualização.
+     */
+    public Produto atualizarAtributoDouble(String atributo, double valor, UUID hash) {
+        try (Connection conexao = ConexaoBancoDados.obterConexao();
+             PreparedStatement stmt = conexao.prepareStatement(produtoSQL.atualizarAtributo(atributo))) {
 
             stmt.setDouble(1, valor);
             stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setObject(3, hash);
 
-            if (stmt.executeUpdate() == 0) {
-                throw new RuntimeException("A operação de atualizar o produto falhou. Nenhuma linha foi afetada.");
-            }
-
+            Produto atualizado = executarERetornar(stmt);
+            invalidarCache(Collections.singletonList(hash));
+            atualizarIndice(Collections.singletonList(atualizado));
+            return atualizado;
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao obter a conexão com o banco de dados: " + e.getMessage(), e);
         }
@@ -192,19 +637,97 @@ public class ProdutoDAO {
      * Atualiza os dados de um produto no banco de dados.
      *
      * @param produto O objeto Produto com os novos dados.
+     * @return O produto atualizado, ou null se nenhum produto possuir o hash informado.
      * @throws RuntimeException Se ocorrer um erro ao obter a conexão com o banco de dados ou ao executar a atualização.
      */
-    public void atualizar(Produto produto){
-        try (PreparedStatement stmt = ConexaoBancoDados.obterConexao().prepareStatement(produtoSQL.atualizar())) {
+    public Produto atualizar(Produto produto){
+        try (Connection conexao = ConexaoBancoDados.obterConexao();
+             PreparedStatement stmt = conexao.prepareStatement(produtoSQL.atualizar())) {
             setDadosDoProdutoParaAtualizacao(produto, stmt);
-            if (stmt.executeUpdate() == 0) {
-                throw new RuntimeException("A operação de atualizar o produto falhou. Nenhuma linha foi afetada.");
-            }
+            Produto atualizado = executarERetornar(stmt);
+            invalidarCache(Collections.singletonList(produto.getHash()));
+            atualizarIndice(Collections.singletonList(atualizado));
+            return atualizado;
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao obter a conexão com o banco de dados: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Aplica as operações de preço de um bloco em uma única instrução. Os hashes do bloco devem ser distintos.
+     *
+     * @param operacoes As operações validadas, com operação em letras minúsculas.
+     * @return Os produtos alterados, indexados pelo hash. Hashes ausentes não foram alterados por não existirem,
+     * estarem inativos ou porque o novo preço seria negativo.
+     * @throws RuntimeException Se ocorrer um erro ao executar a atualização.
+     */
+    public Map<UUID, Produto> atualizarPrecoEmLote(List<OperacaoLote> operacoes) {
+        try (Connection conexao = ConexaoBancoDados.obterConexao();
+             PreparedStatement stmt = conexao.prepareStatement(produtoSQL.atualizarPrecoEmLote())) {
+
+            stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.setArray(2, criarArrayHashes(conexao, operacoes));
+            stmt.setArray(3, conexao.createArrayOf("text",
+                    operacoes.stream().map(OperacaoLote::getOperacao).toArray()));
+            stmt.setArray(4, criarArrayValores(conexao, operacoes));
+
+            Map<UUID, Produto> atualizados = executarERetornarTodos(stmt, Produto::getHash);
+            invalidarCache(atualizados.keySet());
+            atualizarIndice(atualizados.values());
+            return atualizados;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao atualizar o preço dos produtos em lote: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Soma os valores de estoque de um bloco em uma única instrução. Os hashes do bloco devem ser distintos.
+     *
+     * @param operacoes As operações validadas.
+     * @return Os produtos alterados, indexados pelo hash. Hashes ausentes não foram alterados por não existirem,
+     * estarem inativos ou porque o novo estoque seria negativo.
+     * @throws RuntimeException Se ocorrer um erro ao executar a atualização.
+     */
+    public Map<UUID, Produto> atualizarEstoqueEmLote(List<OperacaoLote> operacoes) {
+        try (Connection conexao = ConexaoBancoDados.obterConexao();
+             PreparedStatement stmt = conexao.prepareStatement(produtoSQL.atualizarEstoqueEmLote())) {
+
+            stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.setArray(2, criarArrayHashes(conexao, operacoes));
+            stmt.setArray(3, criarArrayValores(conexao, operacoes));
+
+            Map<UUID, Produto> atualizados = executarERetornarTodos(stmt, Produto::getHash);
+            invalidarCache(atualizados.keySet());
+            atualizarIndice(atualizados.values());
+            return atualizados;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao atualizar o estoque dos produtos em lote: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Busca o status "lativo" dos produtos informados em uma única consulta.
+     *
+     * @param hashes Os hashes dos produtos.
+     * @return O status de cada produto encontrado, indexado pelo hash.
+     * @throws RuntimeException Se ocorrer um erro ao executar a consulta.
+     */
+    public Map<UUID, Boolean> buscarStatusPorHashes(Collection<UUID> hashes) {
+        Map<UUID, Boolean> status = new HashMap<>();
+
+        try (Connection conexao = ConexaoBancoDados.obterConexao();
+             PreparedStatement stmt = conexao.prepareStatement(produtoSQL.buscarStatusPorHashes())) {
+            stmt.setArray(1, conexao.createArrayOf("uuid", hashes.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next())
+                    status.put(rs.getObject(1, UUID.class), rs.getBoolean(2));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar o status dos produtos: " + e.getMessage(), e);
+        }
+        return status;
+    }
+
     /**
      * Deleta um produto do banco de dados com base em seu hash.
      *
@@ -213,14 +736,133 @@ public class ProdutoDAO {
      * @throws RuntimeException Se ocorrer um erro durante a operação de exclusão.
      */
     public Boolean deletar(UUID hash) {
-        try (PreparedStatement stmt = ConexaoBancoDados.obterConexao().prepareStatement(produtoSQL.deletar())) {
+        try (Connection conexao = ConexaoBancoDados.obterConexao();
+             PreparedStatement stmt = conexao.prepareStatement(produtoSQL.deletar())) {
             stmt.setObject(1, hash);
-            return stmt.executeUpdate() > 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                ConexaoBancoDados.registrarEscrita();
+                invalidarCache(Collections.singletonList(hash));
+                UnidadeDeTrabalho.aoConfirmar(() -> {
+                    INDICE_ESTOQUE_BAIXO.remover(hash);
+                    INDICE_NOMES.remover(hash);
+                });
+                if (!rs.next())
+                    return false;
+
+                String nome = rs.getString(1);
+                String ean13 = rs.getString(2);
+                UnidadeDeTrabalho.aoConfirmar(() -> {
+                    FILTRO_DUPLICADOS.remover(PREFIXO_NOME + nome);
+                    FILTRO_DUPLICADOS.remover(PREFIXO_EAN13 + ean13);
+                    SINCRONIZADOS_NO_FILTRO.remove(hash);
+                });
+                return true;
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao deletar o produto.", e);
         }
     }
 
+    /**
+     * Executa uma escrita com cláusula RETURNING e converte a linha devolvida pelo banco.
+     *
+     * @param stmt O PreparedStatement da escrita, já com os parâmetros configurados.
+     * @return O produto devolvido pela escrita, ou null se nenhuma linha foi afetada.
+     * @throws SQLException Se ocorrer um erro ao executar a escrita.
+     */
+    private Produto executarERetornar(PreparedStatement stmt) throws SQLException {
+        try (ResultSet resultado = stmt.executeQuery()) {
+            ConexaoBancoDados.registrarEscrita();
+            return resultado.next() ? new MapeadorLinhaProduto(resultado).mapear() : null;
+        }
+    }
+
+    /**
+     * Executa uma escrita com cláusula RETURNING que pode afetar várias linhas.
+     *
+     * @param stmt  O PreparedStatement da escrita, já com os parâmetros configurados.
+     * @param chave A função que extrai a chave de cada produto devolvido.
+     * @param <K>   O tipo da chave.
+     * @return Os produtos devolvidos pela escrita, indexados pela chave.
+     * @throws SQLException Se ocorrer um erro ao executar a escrita.
+     */
+    private <K> Map<K, Produto> executarERetornarTodos(PreparedStatement stmt, Function<Produto, K> chave) throws SQLException {
+        Map<K, Produto> produtos = new HashMap<>();
+        try (ResultSet resultado = stmt.executeQuery()) {
+            ConexaoBancoDados.registrarEscrita();
+            MapeadorLinhaProduto mapeador = new MapeadorLinhaProduto(resultado);
+            while (resultado.next()) {
+                Produto produto = mapeador.mapear();
+                produtos.put(chave.apply(produto), produto);
+            }
+        }
+        return produtos;
+    }
+
+    /**
+     * Remove os produtos do cache logo após a escrita e, se houver uma unidade de trabalho em andamento,
+     * novamente ao seu término, pois outra requisição pode ter recarregado o valor anterior antes da confirmação.
+     *
+     * @param hashes Os hashes dos produtos alterados.
+     */
+    private void invalidarCache(Collection<UUID> hashes) {
+        if (hashes.isEmpty())
+            return;
+
+        List<UUID> copia = new ArrayList<>(hashes);
+        CACHE.invalidar(copia);
+        if (UnidadeDeTrabalho.emAndamento())
+            UnidadeDeTrabalho.aoFinalizar(() -> CACHE.invalidar(copia));
+    }
+
+    /**
+     * Aplica os produtos alterados ao índice de estoque baixo assim que a transação for confirmada.
+     *
+     * @param produtos Os produtos devolvidos pela escrita; valores nulos são ignorados.
+     */
+    private void atualizarIndice(Collection<Produto> produtos) {
+        List<Produto> alterados = new ArrayList<>(produtos.size());
+        for (Produto produto : produtos)
+            if (produto != null)
+                alterados.add(produto);
+
+        if (!alterados.isEmpty())
+            UnidadeDeTrabalho.aoConfirmar(() -> alterados.forEach(INDICE_ESTOQUE_BAIXO::atualizar));
+    }
+
+    /**
+     * Adiciona os produtos inseridos ao filtro de duplicados e ao índice de nomes assim que a
+     * transação for confirmada.
+     */
+    private void registrarInseridos(Collection<Produto> produtos) {
+        if (produtos.isEmpty())
+            return;
+
+        List<Produto> inseridos = new ArrayList<>(produtos);
+        UnidadeDeTrabalho.aoConfirmar(() -> inseridos.forEach(produto -> {
+            FILTRO_DUPLICADOS.adicionar(PREFIXO_NOME + produto.getNome());
+            FILTRO_DUPLICADOS.adicionar(PREFIXO_EAN13 + produto.getEan13());
+            INDICE_NOMES.adicionar(new NomeProduto(produto.getHash(), produto.getNome()));
+        }));
+    }
+
+    private List<String> filtrarProvaveis(Collection<String> valores, String prefixo) {
+        List<String> provaveis = new ArrayList<>();
+        for (String valor : valores)
+            if (FILTRO_DUPLICADOS.podeConter(prefixo + valor))
+                provaveis.add(valor);
+        return provaveis;
+    }
+
+    private Array criarArrayHashes(Connection conexao, List<OperacaoLote> operacoes) throws SQLException {
+        return conexao.createArrayOf("uuid", operacoes.stream().map(OperacaoLote::getHash).toArray());
+    }
+
+    private Array criarArrayValores(Connection conexao, List<OperacaoLote> operacoes) throws SQLException {
+        return conexao.createArrayOf("numeric",
+                operacoes.stream().map(operacao -> BigDecimal.valueOf(operacao.getValor())).toArray());
+    }
+
     /**
      * Configura os parâmetros do PreparedStatement para inserir um Produto no banco de dados.
      *
@@ -255,27 +897,4 @@ public class ProdutoDAO {
         stmt.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
         stmt.setObject(6, produto.getHash());
     }
-
-    /**
-     * Instancia um objeto Produto com base nos dados de um ResultSet.
-     *
-     * @param resultado O ResultSet contendo os dados do produto.
-     * @return Um objeto Produto preenchido com os dados do ResultSet.
-     * @throws SQLException Se ocorrer um erro ao acessar os dados do ResultSet.
-     */
-    private Produto converterResultSetParaProduto(ResultSet resultado) throws SQLException {
-        return new Produto(
-                UUID.fromString(resultado.getString("hash")),
-                resultado.getString("nome"),
-                resultado.getString("descricao"),
-                resultado.getString("ean13"),
-                resultado.getDouble("preco"),
-                resultado.getDouble("quantidade"),
-                resultado.getDouble("estoque_min"),
-                resultado.getTimestamp("dtcreate").toLocalDateTime(),
-                resultado.getTimestamp("dtupdate") != null
-                        ? resultado.getTimestamp("dtupdate").toLocalDateTime()
-                        : null,
-                resultado.getBoolean("lativo"));
-    }
 }
\ No newline at end of file
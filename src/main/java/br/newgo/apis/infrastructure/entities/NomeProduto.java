@@ -0,0 +1,24 @@
+package br.newgo.apis.infrastructure.entities;
+
+import java.util.UUID;
+
+/**
+ * Representa apenas a identificação e o nome de um produto, usados nas sugestões de autocompletar.
+ */
+public class NomeProduto {
+    private final UUID hash;
+    private final String nome;
+
+    public NomeProduto(UUID hash, String nome) {
+        this.hash = hash;
+        this.nome = nome;
+    }
+
+    public UUID getHash() {
+        return hash;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+}
@@ -0,0 +1,30 @@
+package br.newgo.apis.infrastructure.entities;
+
+import java.util.UUID;
+
+/**
+ * Representa a alteração de um único produto dentro de uma atualização em lote já validada.
+ */
+public class OperacaoLote {
+    private final UUID hash;
+    private final String operacao;
+    private final double valor;
+
+    public OperacaoLote(UUID hash, String operacao, double valor) {
+        this.hash = hash;
+        this.operacao = operacao;
+        this.valor = valor;
+    }
+
+    public UUID getHash() {
+        return hash;
+    }
+
+    public String getOperacao() {
+        return operacao;
+    }
+
+    public double getValor() {
+        return valor;
+    }
+}
@@ -0,0 +1,22 @@
+package br.newgo.apis.infrastructure.entities;
+
+/**
+ * Representa um produto devolvido pela busca textual, com a relevância calculada pelo banco.
+ */
+public class ProdutoEncontrado {
+    private final Produto produto;
+    private final float relevancia;
+
+    public ProdutoEncontrado(Produto produto, float relevancia) {
+        this.produto = produto;
+        this.relevancia = relevancia;
+    }
+
+    public Produto getProduto() {
+        return produto;
+    }
+
+    public float getRelevancia() {
+        return relevancia;
+    }
+}
@@ -0,0 +1,100 @@
+package br.newgo.apis.infrastructure.migracao;
+
+import br.newgo.apis.infrastructure.ConexaoBancoDados;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Aplica as versões do esquema do banco de dados na inicialização da aplicação.
+ *
+ * As versões são os scripts "db/migracao/V1.sql", "db/migracao/V2.sql", ... do classpath, aplicados em ordem
+ * até o primeiro número ausente. Cada versão roda em sua própria transação e é registrada na tabela
+ * "esquema_versao", de modo que nunca é aplicada duas vezes. Um advisory lock impede que duas instâncias
+ * migrem o mesmo banco ao mesmo tempo.
+ */
+public class MigradorBancoDados {
+    private static final Logger LOGGER = Logger.getLogger(MigradorBancoDados.class.getName());
+
+    private static final String CAMINHO_SCRIPTS = "db/migracao/V%d.sql";
+    private static final long CHAVE_LOCK = 7_301_202_310L;
+
+    private static final String CRIAR_TABELA_VERSAO = "CREATE TABLE IF NOT EXISTS esquema_versao (" +
+            "versao integer PRIMARY KEY, script varchar(255) NOT NULL, aplicada_em timestamp NOT NULL DEFAULT now())";
+    private static final String BUSCAR_VERSAO_ATUAL = "SELECT COALESCE(MAX(versao), 0) FROM esquema_versao";
+    private static final String REGISTRAR_VERSAO = "INSERT INTO esquema_versao (versao, script) VALUES (?, ?)";
+
+    /**
+     * Aplica as versões do esquema ainda não registradas no banco principal.
+     *
+     * @throws RuntimeException Se ocorrer um erro ao ler ou aplicar alguma versão.
+     */
+    public static void migrar() {
+        try (Connection conexao = ConexaoBancoDados.obterPool().obterConexao();
+             Statement stmt = conexao.createStatement()) {
+
+            stmt.execute("SELECT pg_advisory_lock(" + CHAVE_LOCK + ")");
+            try {
+                stmt.execute(CRIAR_TABELA_VERSAO);
+                aplicarPendentes(conexao, buscarVersaoAtual(stmt));
+            } finally {
+                stmt.execute("SELECT pg_advisory_unlock(" + CHAVE_LOCK + ")");
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao migrar o esquema do banco de dados: " + e.getMessage(), e);
+        }
+    }
+
+    private static int buscarVersaoAtual(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(BUSCAR_VERSAO_ATUAL)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void aplicarPendentes(Connection conexao, int versaoAtual) throws SQLException {
+        String script;
+        for (int versao = versaoAtual + 1; (script = lerScript(versao)) != null; versao++) {
+            conexao.setAutoCommit(false);
+            try (Statement stmt = conexao.createStatement();
+                 PreparedStatement registro = conexao.prepareStatement(REGISTRAR_VERSAO)) {
+                // O tempo limite das instruções do pool não se aplica às migrações, que podem recriar índices.
+                stmt.execute("SET LOCAL statement_timeout = 0");
+                stmt.execute(script);
+                registro.setInt(1, versao);
+                registro.setString(2, String.format(CAMINHO_SCRIPTS, versao));
+                registro.executeUpdate();
+                conexao.commit();
+                LOGGER.info("Versão " + versao + " do esquema aplicada.");
+            } catch (SQLException e) {
+                conexao.rollback();
+                throw e;
+            } finally {
+                conexao.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static String lerScript(int versao) {
+        InputStream entrada = MigradorBancoDados.class.getClassLoader()
+                .getResourceAsStream(String.format(CAMINHO_SCRIPTS, versao));
+        if (entrada == null)
+            return null;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.joining("\n"));
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao ler a versão " + versao + " do esquema: " + e.getMessage(), e);
+        }
+    }
+}
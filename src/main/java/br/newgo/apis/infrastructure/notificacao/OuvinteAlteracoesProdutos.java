@@ -0,0 +1,188 @@
+package br.newgo.apis.infrastructure.notificacao;
+
+import br.newgo.apis.infrastructure.ConexaoBancoDados;
+import br.newgo.apis.infrastructure.config.ConfigProperties;
+import br.newgo.apis.infrastructure.pool.PoolConexoes;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ouve as alterações de produtos feitas por qualquer instância da aplicação.
+ *
+ * Uma thread dedicada mantém uma conexão própria com o banco principal, fora do pool, executando
+ * "LISTEN produtos_changed". O trigger da tabela de produtos publica nesse canal o hash de cada produto
+ * alterado, e os hashes recebidos em cada leitura são repassados juntos aos ouvintes registrados, que
+ * atualizam suas estruturas em memória. As notificações publicadas pelas conexões do pool desta instância
+ * são ignoradas, pois as suas alterações já foram aplicadas em memória por quem as fez.
+ *
+ * Se a conexão cair, os ouvintes de desconexão são avisados de imediato, e a thread reconecta após
+ * "db.notificacao.intervalo-reconexao-ms". Como as notificações publicadas enquanto a conexão estava fora
+ * são perdidas, após cada reconexão os ouvintes são avisados para descartar ou recarregar todo o conteúdo
+ * em memória.
+ */
+public class OuvinteAlteracoesProdutos {
+    private static final Logger LOGGER = Logger.getLogger(OuvinteAlteracoesProdutos.class.getName());
+    private static final String CANAL = "produtos_changed";
+
+    private static final List<Consumer<Collection<UUID>>> aoAlterar = new CopyOnWriteArrayList<>();
+    private static final List<Runnable> aoPerderNotificacoes = new CopyOnWriteArrayList<>();
+    private static final List<Runnable> aoDesconectar = new CopyOnWriteArrayList<>();
+    private static volatile Thread thread;
+    private static volatile boolean executando;
+
+    /**
+     * Registra um ouvinte das alterações de produtos.
+     *
+     * @param alteracao          Chamado com os hashes dos produtos inseridos, alterados ou removidos por
+     *                            outras instâncias, sem repetições.
+     * @param perdaDeNotificacoes Chamado após uma reconexão, quando alterações podem ter sido perdidas.
+     */
+    public static void registrar(Consumer<Collection<UUID>> alteracao, Runnable perdaDeNotificacoes) {
+        aoAlterar.add(alteracao);
+        aoPerderNotificacoes.add(perdaDeNotificacoes);
+    }
+
+    /**
+     * Registra um ouvinte da queda da conexão de notificações, chamado antes da reconexão. Até a reconexão,
+     * as alterações feitas por outras instâncias não são recebidas.
+     *
+     * @param desconexao Chamado quando a conexão de notificações é perdida.
+     */
+    public static void registrarDesconexao(Runnable desconexao) {
+        aoDesconectar.add(desconexao);
+    }
+
+    /**
+     * Inicia a thread de escuta, caso ainda não esteja em execução.
+     */
+    public static synchronized void iniciar() {
+        if (thread != null)
+            return;
+
+        executando = true;
+        thread = new Thread(OuvinteAlteracoesProdutos::executar, "ouvinte-produtos");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Encerra a thread de escuta e a sua conexão.
+     */
+    public static synchronized void encerrar() {
+        if (thread == null)
+            return;
+
+        executando = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    private static void executar() {
+        long intervaloReconexaoMs = ConfigProperties.getLong("db.notificacao.intervalo-reconexao-ms", 1000);
+        int esperaMs = ConfigProperties.getInt("db.notificacao.espera-ms", 500);
+        long intervaloVerificacaoNanos = TimeUnit.MILLISECONDS.toNanos(
+                ConfigProperties.getLong("db.notificacao.intervalo-verificacao-ms", 30000));
+        boolean primeiraConexao = true;
+
+        while (executando) {
+            try (Connection conexao = conectar()) {
+                if (!primeiraConexao)
+                    notificar(aoPerderNotificacoes, "Erro ao descartar o conteúdo após a perda de notificações.");
+                primeiraConexao = false;
+
+                PGConnection conexaoPostgres = conexao.unwrap(PGConnection.class);
+                long ultimaVerificacao = System.nanoTime();
+                while (executando) {
+                    PGNotification[] notificacoes = conexaoPostgres.getNotifications(esperaMs);
+                    if (notificacoes != null && notificacoes.length > 0) {
+                        despachar(notificacoes);
+                    } else if (System.nanoTime() - ultimaVerificacao > intervaloVerificacaoNanos) {
+                        // Uma conexão derrubada sem aviso não gera erro enquanto apenas aguarda notificações.
+                        if (!conexao.isValid(5))
+                            throw new SQLException("Conexão de notificações inválida.");
+                        ultimaVerificacao = System.nanoTime();
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!executando)
+                    return;
+                LOGGER.log(Level.WARNING, "Conexão de notificações de produtos perdida, reconectando.", e);
+                notificar(aoDesconectar, "Erro ao tratar a perda da conexão de notificações.");
+                primeiraConexao = false;
+                try {
+                    Thread.sleep(intervaloReconexaoMs);
+                } catch (InterruptedException interrompida) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static Connection conectar() throws SQLException {
+        Connection conexao = DriverManager.getConnection(
+                ConfigProperties.getProperty("db.url"),
+                ConfigProperties.getProperty("db.usuario"),
+                ConfigProperties.getProperty("db.senha"));
+        try (Statement stmt = conexao.createStatement()) {
+            stmt.execute("LISTEN " + CANAL);
+        } catch (SQLException e) {
+            conexao.close();
+            throw e;
+        }
+        return conexao;
+    }
+
+    private static void despachar(PGNotification[] notificacoes) {
+        PoolConexoes pool = ConexaoBancoDados.obterPool();
+        Set<UUID> hashes = new LinkedHashSet<>();
+        for (PGNotification notificacao : notificacoes) {
+            if (pool.isProcessoDoPool(notificacao.getPID()))
+                continue;
+            try {
+                hashes.add(UUID.fromString(notificacao.getParameter()));
+            } catch (IllegalArgumentException e) {
+                LOGGER.warning("Notificação de produto com hash inválido: " + notificacao.getParameter());
+            }
+        }
+        if (hashes.isEmpty())
+            return;
+
+        for (Consumer<Collection<UUID>> ouvinte : aoAlterar) {
+            try {
+                ouvinte.accept(hashes);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Erro ao processar a alteração de " + hashes.size() + " produto(s).", e);
+            }
+        }
+    }
+
+    private static void notificar(List<Runnable> ouvintes, String mensagemErro) {
+        for (Runnable ouvinte : ouvintes) {
+            try {
+                ouvinte.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, mensagemErro, e);
+            }
+        }
+    }
+}
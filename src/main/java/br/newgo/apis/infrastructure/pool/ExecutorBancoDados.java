@@ -0,0 +1,87 @@
+package br.newgo.apis.infrastructure.pool;
+
+import br.newgo.apis.infrastructure.config.ConfigProperties;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor limitado para as tarefas que acessam o banco de dados, dimensionado pelo pool de conexões.
+ *
+ * Como cada tarefa ocupa no máximo uma conexão, mais threads do que conexões só trocariam a espera no
+ * executor pela espera no pool. As tarefas excedentes aguardam em uma fila limitada; uma tarefa que
+ * esperou na fila mais do que o timeout configurado não é executada, e o chamador é avisado para
+ * responder que o serviço está indisponível.
+ *
+ * As configurações são lidas do arquivo config.properties: "db.executor.threads" (padrão igual a
+ * "db.pool.tamanho-maximo"), "db.executor.tamanho-fila" e "db.executor.timeout-fila-ms".
+ */
+public class ExecutorBancoDados {
+    private final ThreadPoolExecutor executor;
+    private final long timeoutFilaNanos;
+
+    /**
+     * Cria o executor com as configurações do arquivo config.properties.
+     */
+    public ExecutorBancoDados() {
+        int threads = Math.max(1, ConfigProperties.getInt("db.executor.threads",
+                ConfigProperties.getInt("db.pool.tamanho-maximo", 10)));
+        int tamanhoFila = Math.max(1, ConfigProperties.getInt("db.executor.tamanho-fila", 1000));
+        this.timeoutFilaNanos = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(0, ConfigProperties.getLong("db.executor.timeout-fila-ms", 5000)));
+
+        AtomicInteger contador = new AtomicInteger();
+        ThreadFactory fabrica = tarefa -> {
+            Thread thread = new Thread(tarefa, "executor-banco-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(tamanhoFila), fabrica, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Enfileira uma tarefa. Se ela aguardar na fila além de "db.executor.timeout-fila-ms", a ação de
+     * expiração é executada no lugar da tarefa.
+     *
+     * @param tarefa    A tarefa que acessa o banco de dados.
+     * @param aoExpirar A ação executada quando a tarefa expira na fila.
+     * @throws PoolEsgotadoException Se a fila estiver cheia ou o executor encerrado.
+     */
+    public void executar(Runnable tarefa, Runnable aoExpirar) {
+        long enfileiradaEm = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                if (System.nanoTime() - enfileiradaEm > timeoutFilaNanos)
+                    aoExpirar.run();
+                else
+                    tarefa.run();
+            });
+        } catch (RejectedExecutionException e) {
+            throw new PoolEsgotadoException("Fila de execução do banco de dados cheia.");
+        }
+    }
+
+    /**
+     * Recusa novas tarefas e aguarda, por alguns segundos, o término das que já foram aceitas.
+     */
+    public void encerrar() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ExecutorBancoDados[threads=%d, ativas=%d, naFila=%d, concluidas=%d]",
+                executor.getMaximumPoolSize(), executor.getActiveCount(), executor.getQueue().size(),
+                executor.getCompletedTaskCount());
+    }
+}
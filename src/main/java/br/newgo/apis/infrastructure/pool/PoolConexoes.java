@@ -0,0 +1,666 @@
+package br.newgo.apis.infrastructure.pool;
+
+import br.newgo.apis.infrastructure.config.ConfigProperties;
+import org.postgresql.PGConnection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool limitado de conexões JDBC.
+ *
+ * As conexões entregues são proxies: chamar {@link Connection#close()} devolve a conexão física ao pool
+ * em vez de encerrá-la. O pool valida conexões ociosas antes de reutilizá-las, descarta as que ficaram
+ * ociosas por tempo demais, mantém o tamanho mínimo configurado e registra possíveis vazamentos
+ * (conexões emprestadas por mais tempo que o limite configurado). A pilha de chamadas de cada empréstimo,
+ * que indica onde a conexão vazada foi obtida, só é capturada com "db.pool.rastrear-origem-emprestimo",
+ * pois custa uma captura de pilha a cada empréstimo.
+ *
+ * Cada conexão física mantém um cache LRU limitado de PreparedStatements, indexado pelo texto SQL.
+ * Fechar um statement obtido do cache apenas o devolve ao cache, de modo que o driver pode reaproveitar
+ * o plano preparado no servidor nas próximas execuções da mesma consulta.
+ *
+ * As configurações são lidas do arquivo config.properties com o prefixo "db.pool.".
+ */
+public class PoolConexoes {
+    private static final Logger LOGGER = Logger.getLogger(PoolConexoes.class.getName());
+
+    private final String nome;
+    private final String url;
+    private final Properties propriedadesConexao;
+
+    private final int tamanhoMinimo;
+    private final int tamanhoMaximo;
+    private final long timeoutAquisicaoMs;
+    private final long tempoOciosoMs;
+    private final long intervaloValidacaoMs;
+    private final int timeoutValidacaoS;
+    private final long limiteVazamentoMs;
+    private final boolean rastrearOrigemEmprestimo;
+    private final int tamanhoCacheStatements;
+
+    private final LinkedBlockingDeque<ConexaoAgrupada> ociosas = new LinkedBlockingDeque<>();
+    private final Set<ConexaoAgrupada> emUso = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> processosServidor = ConcurrentHashMap.newKeySet();
+    private final Semaphore permissoes;
+    private final AtomicInteger totalConexoes = new AtomicInteger();
+    private final ScheduledExecutorService manutencao;
+    private volatile boolean encerrado;
+
+    private final LongAdder totalAquisicoes = new LongAdder();
+    private final LongAdder tempoEsperaTotalNanos = new LongAdder();
+    private final AtomicLong tempoEsperaMaximoNanos = new AtomicLong();
+    private final LongAdder totalTimeouts = new LongAdder();
+    private final LongAdder conexoesCriadas = new LongAdder();
+    private final LongAdder conexoesDescartadas = new LongAdder();
+    private final LongAdder acertosCacheStatements = new LongAdder();
+    private final LongAdder faltasCacheStatements = new LongAdder();
+
+    /**
+     * Cria um pool de conexões para o banco de dados informado.
+     *
+     * @param nome    Nome do pool, utilizado em mensagens e logs.
+     * @param url     A URL JDBC do banco de dados.
+     * @param usuario O usuário do banco de dados.
+     * @param senha   A senha do banco de dados.
+     */
+    public PoolConexoes(String nome, String url, String usuario, String senha) {
+        this.nome = nome;
+        this.url = url;
+        this.propriedadesConexao = new Properties();
+        propriedadesConexao.setProperty("user", usuario);
+        propriedadesConexao.setProperty("password", senha);
+        propriedadesConexao.setProperty("prepareThreshold",
+                ConfigProperties.getProperty("db.pool.prepare-threshold", "1"));
+        long statementTimeoutMs = ConfigProperties.getLong("db.pool.statement-timeout-ms", 0);
+        if (statementTimeoutMs > 0)
+            propriedadesConexao.setProperty("options", "-c statement_timeout=" + statementTimeoutMs);
+
+        this.tamanhoMaximo = Math.max(1, ConfigProperties.getInt("db.pool.tamanho-maximo", 10));
+        this.tamanhoMinimo = Math.min(tamanhoMaximo, Math.max(0, ConfigProperties.getInt("db.pool.tamanho-minimo", 2)));
+        this.timeoutAquisicaoMs = ConfigProperties.getLong("db.pool.timeout-aquisicao-ms", 5000);
+        this.tempoOciosoMs = ConfigProperties.getLong("db.pool.tempo-ocioso-ms", 600000);
+        this.intervaloValidacaoMs = ConfigProperties.getLong("db.pool.intervalo-validacao-ms", 30000);
+        this.timeoutValidacaoS = ConfigProperties.getInt("db.pool.timeout-validacao-s", 2);
+        this.limiteVazamentoMs = ConfigProperties.getLong("db.pool.limite-vazamento-ms", 60000);
+        this.rastrearOrigemEmprestimo = ConfigProperties.getBoolean("db.pool.rastrear-origem-emprestimo", false);
+        this.tamanhoCacheStatements = Math.max(0, ConfigProperties.getInt("db.pool.cache-statements", 64));
+
+        this.permissoes = new Semaphore(tamanhoMaximo, true);
+        this.manutencao = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "pool-conexoes-" + nome);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long intervaloManutencaoMs = Math.max(1000, ConfigProperties.getLong("db.pool.intervalo-manutencao-ms", 30000));
+        manutencao.scheduleWithFixedDelay(this::executarManutencao, 0, intervaloManutencaoMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Empresta uma conexão do pool, aguardando no máximo o tempo de aquisição configurado.
+     *
+     * @return Uma conexão cujo close() a devolve ao pool.
+     * @throws PoolEsgotadoException Se nenhuma conexão ficar disponível dentro do tempo de aquisição.
+     * @throws RuntimeException      Se ocorrer um erro ao abrir uma nova conexão física.
+     */
+    public Connection obterConexao() {
+        if (encerrado)
+            throw new IllegalStateException("O pool de conexões '" + nome + "' foi encerrado.");
+
+        long inicio = System.nanoTime();
+        boolean permitido;
+        try {
+            permitido = permissoes.tryAcquire(timeoutAquisicaoMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrompido ao aguardar uma conexão do pool.", e);
+        }
+        registrarEspera(System.nanoTime() - inicio);
+
+        if (!permitido) {
+            totalTimeouts.increment();
+            throw new PoolEsgotadoException("Tempo esgotado ao aguardar uma conexão do pool '" + nome + "'.");
+        }
+
+        try {
+            ConexaoAgrupada conexao = obterOciosaValida();
+            if (conexao == null)
+                conexao = criarConexao();
+
+            conexao.registrarEmprestimo(limiteVazamentoMs > 0 && rastrearOrigemEmprestimo);
+            emUso.add(conexao);
+            return conexao.criarProxy();
+        } catch (RuntimeException e) {
+            permissoes.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Encerra o pool, fechando as conexões ociosas. Conexões em uso são fechadas ao serem devolvidas.
+     */
+    public void encerrar() {
+        encerrado = true;
+        manutencao.shutdownNow();
+
+        ConexaoAgrupada conexao;
+        while ((conexao = ociosas.pollFirst()) != null)
+            descartar(conexao);
+    }
+
+    /**
+     * Indica se o processo do servidor pertence a uma conexão física aberta por este pool, por exemplo
+     * para reconhecer as notificações publicadas pela própria instância da aplicação.
+     *
+     * @param pid O identificador do processo do servidor (pg_backend_pid).
+     * @return true se alguma conexão física aberta do pool utiliza esse processo.
+     */
+    public boolean isProcessoDoPool(int pid) {
+        return processosServidor.contains(pid);
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public int getConexoesAtivas() {
+        return emUso.size();
+    }
+
+    public int getConexoesOciosas() {
+        return ociosas.size();
+    }
+
+    public int getTotalConexoes() {
+        return totalConexoes.get();
+    }
+
+    public int getTamanhoMaximo() {
+        return tamanhoMaximo;
+    }
+
+    public int getThreadsAguardando() {
+        return permissoes.getQueueLength();
+    }
+
+    public long getTotalAquisicoes() {
+        return totalAquisicoes.sum();
+    }
+
+    public long getTotalTimeouts() {
+        return totalTimeouts.sum();
+    }
+
+    public long getConexoesCriadas() {
+        return conexoesCriadas.sum();
+    }
+
+    public long getConexoesDescartadas() {
+        return conexoesDescartadas.sum();
+    }
+
+    public long getAcertosCacheStatements() {
+        return acertosCacheStatements.sum();
+    }
+
+    public long getFaltasCacheStatements() {
+        return faltasCacheStatements.sum();
+    }
+
+    public double getTempoMedioEsperaMs() {
+        long aquisicoes = totalAquisicoes.sum();
+        return aquisicoes == 0 ? 0 : tempoEsperaTotalNanos.sum() / (aquisicoes * 1_000_000.0);
+    }
+
+    public double getTempoMaximoEsperaMs() {
+        return tempoEsperaMaximoNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolConexoes[" + nome +
+                ", ativas=" + getConexoesAtivas() +
+                ", ociosas=" + getConexoesOciosas() +
+                ", total=" + getTotalConexoes() + "/" + tamanhoMaximo +
+                ", aguardando=" + getThreadsAguardando() +
+                ", esperaMediaMs=" + String.format("%.3f", getTempoMedioEsperaMs()) +
+                ", esperaMaximaMs=" + String.format("%.3f", getTempoMaximoEsperaMs()) +
+                ", timeouts=" + getTotalTimeouts() +
+                ", cacheStatements=" + getAcertosCacheStatements() + "/" + getFaltasCacheStatements() + "]";
+    }
+
+    private void registrarEspera(long nanos) {
+        totalAquisicoes.increment();
+        tempoEsperaTotalNanos.add(nanos);
+        tempoEsperaMaximoNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Retira a conexão ociosa usada mais recentemente, validando-a caso esteja parada há mais tempo
+     * que o intervalo de validação.
+     *
+     * @return Uma conexão ociosa válida ou null se não houver nenhuma.
+     */
+    private ConexaoAgrupada obterOciosaValida() {
+        ConexaoAgrupada conexao;
+        while ((conexao = ociosas.pollFirst()) != null) {
+            if (conexao.ociosaHaMaisDe(intervaloValidacaoMs) && !conexao.isValida(timeoutValidacaoS)) {
+                descartar(conexao);
+                continue;
+            }
+            return conexao;
+        }
+        return null;
+    }
+
+    private ConexaoAgrupada criarConexao() {
+        totalConexoes.incrementAndGet();
+        try {
+            Connection fisica = DriverManager.getConnection(url, propriedadesConexao);
+            conexoesCriadas.increment();
+            return new ConexaoAgrupada(fisica);
+        } catch (SQLException e) {
+            totalConexoes.decrementAndGet();
+            throw new RuntimeException("Erro ao obter conexão com o banco de dados.", e);
+        }
+    }
+
+    /**
+     * Devolve uma conexão ao pool, restaurando seu estado padrão. Conexões quebradas são descartadas.
+     *
+     * @param conexao A conexão a ser devolvida.
+     */
+    private void devolver(ConexaoAgrupada conexao) {
+        emUso.remove(conexao);
+        try {
+            if (encerrado || conexao.isQuebrada() || !conexao.restaurarEstado())
+                descartar(conexao);
+            else
+                ociosas.offerFirst(conexao);
+        } finally {
+            permissoes.release();
+        }
+    }
+
+    private void descartar(ConexaoAgrupada conexao) {
+        totalConexoes.decrementAndGet();
+        conexoesDescartadas.increment();
+        conexao.fecharFisica();
+    }
+
+    /**
+     * Remove conexões ociosas expiradas, repõe o tamanho mínimo do pool e registra possíveis vazamentos.
+     */
+    private void executarManutencao() {
+        try {
+            detectarVazamentos();
+            removerOciosasExpiradas();
+            preencherTamanhoMinimo();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Erro na manutenção do pool de conexões '" + nome + "'.", e);
+        }
+    }
+
+    private void detectarVazamentos() {
+        if (limiteVazamentoMs <= 0)
+            return;
+
+        for (ConexaoAgrupada conexao : emUso) {
+            if (conexao.emprestadaHaMaisDe(limiteVazamentoMs) && conexao.marcarVazamentoReportado())
+                LOGGER.log(Level.WARNING, "Possível vazamento de conexão no pool '" + nome +
+                        "': conexão emprestada há mais de " + limiteVazamentoMs + " ms." + (conexao.getOrigem() == null
+                        ? " Habilite \"db.pool.rastrear-origem-emprestimo\" para registrar onde ela foi obtida." : ""),
+                        conexao.getOrigem());
+        }
+    }
+
+    private void removerOciosasExpiradas() {
+        for (ConexaoAgrupada conexao : ociosas) {
+            if (totalConexoes.get() <= tamanhoMinimo)
+                return;
+            if (conexao.ociosaHaMaisDe(tempoOciosoMs) && ociosas.remove(conexao))
+                descartar(conexao);
+        }
+    }
+
+    private void preencherTamanhoMinimo() {
+        while (!encerrado && totalConexoes.get() < tamanhoMinimo && permissoes.tryAcquire()) {
+            try {
+                ociosas.offerLast(criarConexao());
+            } finally {
+                permissoes.release();
+            }
+        }
+    }
+
+    /**
+     * Conexão física mantida pelo pool, com os dados necessários para validação, expiração e detecção de vazamento.
+     */
+    private final class ConexaoAgrupada {
+        private final Connection fisica;
+        private final int isolamentoPadrao;
+        private volatile long ultimoUso;
+        private volatile long momentoEmprestimo;
+        private volatile Throwable origem;
+        private final AtomicBoolean vazamentoReportado = new AtomicBoolean();
+        private volatile boolean quebrada;
+        private final int pidServidor;
+        private final Map<String, EntradaStatement> statements = new LinkedHashMap<String, EntradaStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EntradaStatement> maisAntiga) {
+                if (size() <= tamanhoCacheStatements)
+                    return false;
+                maisAntiga.getValue().descartar();
+                return true;
+            }
+        };
+
+        private ConexaoAgrupada(Connection fisica) throws SQLException {
+            this.fisica = fisica;
+            this.isolamentoPadrao = fisica.getTransactionIsolation();
+            this.ultimoUso = System.currentTimeMillis();
+            this.pidServidor = fisica.isWrapperFor(PGConnection.class)
+                    ? fisica.unwrap(PGConnection.class).getBackendPID() : 0;
+            if (pidServidor != 0)
+                processosServidor.add(pidServidor);
+        }
+
+        private void registrarEmprestimo(boolean registrarOrigem) {
+            momentoEmprestimo = System.currentTimeMillis();
+            origem = registrarOrigem ? new Throwable("Conexão obtida do pool neste ponto.") : null;
+            vazamentoReportado.set(false);
+        }
+
+        /**
+         * Obtém um PreparedStatement do cache da conexão, preparando-o caso ainda não exista.
+         * Se o statement em cache já estiver em uso por outra consulta aberta, um statement
+         * comum (fora do cache) é devolvido.
+         */
+        private PreparedStatement obterStatement(Emprestimo emprestimo, Method metodo, Object[] args) throws Throwable {
+            String chave = args.length == 1 ? (String) args[0] : args[0] + "\u0000" + args[1];
+            EntradaStatement entrada = statements.get(chave);
+
+            if (entrada != null && entrada.emUso)
+                return (PreparedStatement) emprestimo.invocarFisica(metodo, args);
+
+            if (entrada == null) {
+                faltasCacheStatements.increment();
+                entrada = new EntradaStatement(chave, (PreparedStatement) emprestimo.invocarFisica(metodo, args));
+                statements.put(chave, entrada);
+            } else {
+                acertosCacheStatements.increment();
+            }
+
+            entrada.emUso = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new StatementEmCache(emprestimo, entrada));
+        }
+
+        private void liberarStatements() {
+            for (EntradaStatement entrada : statements.values().toArray(new EntradaStatement[0]))
+                if (entrada.emUso)
+                    entrada.liberar();
+        }
+
+        private Connection criarProxy() {
+            Emprestimo emprestimo = new Emprestimo(this);
+            emprestimo.proxy = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    emprestimo);
+            return emprestimo.proxy;
+        }
+
+        private boolean ociosaHaMaisDe(long millis) {
+            return System.currentTimeMillis() - ultimoUso > millis;
+        }
+
+        private boolean emprestadaHaMaisDe(long millis) {
+            return System.currentTimeMillis() - momentoEmprestimo > millis;
+        }
+
+        private boolean marcarVazamentoReportado() {
+            return vazamentoReportado.compareAndSet(false, true);
+        }
+
+        private Throwable getOrigem() {
+            return origem;
+        }
+
+        private boolean isQuebrada() {
+            return quebrada;
+        }
+
+        private boolean isValida(int timeoutSegundos) {
+            try {
+                return fisica.isValid(timeoutSegundos);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Desfaz transações pendentes e restaura autocommit, modo somente leitura e nível de isolamento.
+         *
+         * @return true se a conexão pode voltar ao pool, false se deve ser descartada.
+         */
+        private boolean restaurarEstado() {
+            liberarStatements();
+            try {
+                if (!fisica.getAutoCommit()) {
+                    fisica.rollback();
+                    fisica.setAutoCommit(true);
+                }
+                if (fisica.isReadOnly())
+                    fisica.setReadOnly(false);
+                if (fisica.getTransactionIsolation() != isolamentoPadrao)
+                    fisica.setTransactionIsolation(isolamentoPadrao);
+                fisica.clearWarnings();
+                ultimoUso = System.currentTimeMillis();
+                origem = null;
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private void fecharFisica() {
+            if (pidServidor != 0)
+                processosServidor.remove(pidServidor);
+            try {
+                fisica.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Erro ao fechar conexão física do pool '" + nome + "'.", e);
+            }
+        }
+    }
+
+    /**
+     * Proxy de um único empréstimo. Após o close(), qualquer uso da referência antiga falha
+     * em vez de afetar o próximo usuário da mesma conexão física.
+     */
+    private final class Emprestimo implements InvocationHandler {
+        private final ConexaoAgrupada conexao;
+        private final AtomicBoolean ativo = new AtomicBoolean(true);
+        private Connection proxy;
+
+        private Emprestimo(ConexaoAgrupada conexao) {
+            this.conexao = conexao;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            switch (metodo.getName()) {
+                case "close":
+                    if (ativo.compareAndSet(true, false))
+                        devolver(conexao);
+                    return null;
+                case "isClosed":
+                    return !ativo.get() || conexao.fisica.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexaoAgrupada[" + nome + "]";
+                default:
+                    break;
+            }
+
+            if (!ativo.get())
+                throw new SQLException("A conexão já foi devolvida ao pool.");
+
+            if (metodo.getName().equals("prepareStatement") && isCacheavel(metodo))
+                return conexao.obterStatement(this, metodo, args);
+
+            return invocarFisica(metodo, args);
+        }
+
+        private Object invocarFisica(Method metodo, Object[] args) throws Throwable {
+            return invocar(conexao.fisica, metodo, args);
+        }
+
+        /**
+         * Invoca o método no objeto JDBC físico, marcando a conexão como quebrada em erros de comunicação.
+         */
+        private Object invocar(Object alvo, Method metodo, Object[] args) throws Throwable {
+            try {
+                return metodo.invoke(alvo, args);
+            } catch (InvocationTargetException e) {
+                Throwable causa = e.getCause();
+                if (causa instanceof SQLException && isErroDeConexao((SQLException) causa))
+                    conexao.quebrada = true;
+                throw causa;
+            }
+        }
+
+        private boolean isCacheavel(Method metodo) {
+            Class<?>[] parametros = metodo.getParameterTypes();
+            return tamanhoCacheStatements > 0 && (Arrays.equals(parametros, new Class<?>[]{String.class})
+                    || Arrays.equals(parametros, new Class<?>[]{String.class, int.class}));
+        }
+
+        private boolean isErroDeConexao(SQLException e) {
+            return e.getSQLState() != null && e.getSQLState().startsWith("08");
+        }
+    }
+
+    /**
+     * PreparedStatement mantido no cache de uma conexão física.
+     */
+    private static final class EntradaStatement {
+        private final String chave;
+        private final PreparedStatement fisico;
+        private boolean emUso;
+        private boolean descartado;
+
+        private EntradaStatement(String chave, PreparedStatement fisico) {
+            this.chave = chave;
+            this.fisico = fisico;
+        }
+
+        /**
+         * Limpa parâmetros e configurações do statement para o próximo uso. Se o statement foi removido
+         * do cache enquanto estava em uso, ou se não puder ser reiniciado, ele é fechado.
+         */
+        private void liberar() {
+            emUso = false;
+            if (descartado) {
+                fechar();
+                return;
+            }
+            try {
+                fisico.clearParameters();
+                fisico.clearBatch();
+                fisico.clearWarnings();
+                fisico.setFetchSize(0);
+                fisico.setMaxRows(0);
+                fisico.setQueryTimeout(0);
+            } catch (SQLException e) {
+                descartado = true;
+                fechar();
+            }
+        }
+
+        private void descartar() {
+            descartado = true;
+            if (!emUso)
+                fechar();
+        }
+
+        private void fechar() {
+            try {
+                fisico.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Erro ao fechar statement em cache '" + chave + "'.", e);
+            }
+        }
+    }
+
+    /**
+     * Proxy de um statement emprestado do cache. Fechá-lo devolve o statement ao cache da conexão.
+     */
+    private static final class StatementEmCache implements InvocationHandler {
+        private final Emprestimo emprestimo;
+        private final EntradaStatement entrada;
+        private final AtomicBoolean ativo = new AtomicBoolean(true);
+
+        private StatementEmCache(Emprestimo emprestimo, EntradaStatement entrada) {
+            this.emprestimo = emprestimo;
+            this.entrada = entrada;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            switch (metodo.getName()) {
+                case "close":
+                    if (ativo.compareAndSet(true, false) && emprestimo.ativo.get())
+                        entrada.liberar();
+                    return null;
+                case "isClosed":
+                    return !ativo.get() || !emprestimo.ativo.get() || entrada.fisico.isClosed();
+                case "getConnection":
+                    return emprestimo.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "StatementEmCache[" + entrada.chave + "]";
+                default:
+                    break;
+            }
+
+            if (!ativo.get() || !emprestimo.ativo.get())
+                throw new SQLException("O statement já foi fechado.");
+
+            return emprestimo.invocar(entrada.fisico, metodo, args);
+        }
+    }
+}
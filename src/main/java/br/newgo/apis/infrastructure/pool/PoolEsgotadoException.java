@@ -0,0 +1,12 @@
+package br.newgo.apis.infrastructure.pool;
+
+/**
+ * Exceção lançada quando não é possível obter uma conexão do pool dentro do tempo de aquisição configurado.
+ */
+public class PoolEsgotadoException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public PoolEsgotadoException(String mensagem) {
+        super(mensagem);
+    }
+}
@@ -1,7 +1,9 @@
 package br.newgo.apis.infrastructure.server;
 
+import br.newgo.apis.infrastructure.config.ConfigProperties;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.connector.Connector;
 import org.apache.catalina.core.StandardContext;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.webresources.DirResourceSet;
@@ -30,7 +32,27 @@ public class EmbeddedTomcatServer {
         tomcat.setPort(8080);
         configurarWebapp();
         tomcat.enableNaming();
-        tomcat.getConnector();
+        configurarCompressao(tomcat.getConnector());
+        // Requisição e resposta atendidas em modo assíncrono não são reaproveitadas por outra requisição:
+        // um uso tardio de uma requisição já concluída falha em vez de alcançar a resposta de outro cliente.
+        tomcat.getConnector().setDiscardFacades(true);
+    }
+
+    /**
+     * Habilita a compressão do conector quando configurada. As respostas JSON da aplicação já são comprimidas
+     * por ResponseUtils; o conector atende às demais respostas e não comprime novamente as que já
+     * possuem Content-Encoding.
+     *
+     * @param conector O conector HTTP do Tomcat.
+     */
+    private void configurarCompressao(Connector conector) {
+        if (!ConfigProperties.getBoolean("http.compressao.conector.habilitada", false))
+            return;
+
+        conector.setProperty("compression", "on");
+        conector.setProperty("compressionMinSize",
+                String.valueOf(ConfigProperties.getInt("http.compressao.tamanho-minimo", 1024)));
+        conector.setProperty("compressibleMimeType", "application/json,text/html,text/plain,text/css,application/javascript");
     }
 
     /**
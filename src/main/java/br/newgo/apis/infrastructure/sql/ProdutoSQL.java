@@ -1,64 +1,283 @@
 package br.newgo.apis.infrastructure.sql;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * A classe ProdutoSQL define consultas SQL pré-definidas para interagir com a tabela de produtos em um banco de dados.
- * Ela fornece consultas para inserir, atualizar, verificar a existência, buscar por hash, buscar todos e deletar registros na tabela de produtos.
+ * Ela fornece consultas para inserir, atualizar, buscar por hash, buscar todos e deletar registros na tabela de produtos.
+ *
+ * Todas as consultas são montadas uma única vez, quando a classe é carregada, e sempre devolvem a mesma instância
+ * de String. Assim o texto SQL pode ser usado como chave do cache de statements das conexões do pool.
  */
 public class ProdutoSQL {
+    /**
+     * Colunas devolvidas por todas as consultas de produto, sempre nesta ordem.
+     */
+    private static final String COLUNAS =
+            "id, hash, nome, descricao, ean13, preco, quantidade, estoque_min, dtcreate, dtupdate, lativo";
+    private static final String COLUNAS_ALIAS_P =
+            "p.id, p.hash, p.nome, p.descricao, p.ean13, p.preco, p.quantidade, p.estoque_min, p.dtcreate, p.dtupdate, p.lativo";
+
+    private static final List<String> COLUNAS_BUSCA = Arrays.asList("hash");
+    private static final List<String> COLUNAS_ATUALIZAVEIS = Arrays.asList("lativo", "preco", "quantidade");
+
+    private static final String INSERIR = "INSERT INTO PRODUTOS " +
+            "(nome, descricao, ean13, preco, quantidade, estoque_min, dtcreate, dtupdate, lativo)" +
+            " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING RETURNING " + COLUNAS;
+    private static final String INSERIR_EM_LOTE = "INSERT INTO PRODUTOS " +
+            "(nome, descricao, ean13, preco, quantidade, estoque_min, dtcreate, dtupdate, lativo)" +
+            " SELECT a.nome, a.descricao, a.ean13, a.preco, a.quantidade, a.estoque_min, ?, NULL, false" +
+            " FROM unnest(?::text[], ?::text[], ?::text[], ?::numeric[], ?::numeric[], ?::numeric[])" +
+            " AS a(nome, descricao, ean13, preco, quantidade, estoque_min) ON CONFLICT DO NOTHING RETURNING " + COLUNAS;
+    private static final String BUSCAR_NOMES_E_EAN13_EXISTENTES =
+            "SELECT nome, ean13 FROM PRODUTOS WHERE nome = ANY(?) OR ean13 = ANY(?)";
+    private static final String ATUALIZAR = "UPDATE PRODUTOS SET descricao = ?, preco=?, quantidade=?, estoque_min=?, dtupdate=? WHERE hash = ? RETURNING " + COLUNAS;
+    private static final String BUSCAR_TODOS = "SELECT " + COLUNAS + " FROM PRODUTOS";
+    private static final String BUSCAR_TODOS_POR_STATUS = "SELECT " + COLUNAS + " FROM PRODUTOS WHERE lativo = ? ORDER BY id";
+    private static final String BUSCAR_TODOS_COM_ESTOQUE_BAIXO =
+            "SELECT " + COLUNAS + " FROM PRODUTOS WHERE lativo = true AND quantidade < estoque_min" +
+            " ORDER BY quantidade - estoque_min, id";
+    private static final String BUSCAR_PAGINA = "SELECT " + COLUNAS + " FROM PRODUTOS WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String BUSCAR_PAGINA_POR_STATUS =
+            "SELECT " + COLUNAS + " FROM PRODUTOS WHERE lativo = ? AND id > ? ORDER BY id LIMIT ?";
+    private static final String BUSCAR_PAGINA_COM_ESTOQUE_BAIXO =
+            "SELECT " + COLUNAS + " FROM PRODUTOS WHERE lativo = true AND quantidade < estoque_min" +
+            " AND (quantidade - estoque_min, id) > (?::numeric, ?) ORDER BY quantidade - estoque_min, id LIMIT ?";
+    private static final String BUSCAR_TEXTO =
+            "SELECT * FROM (SELECT " + COLUNAS + ", ts_rank(busca, consulta) AS relevancia" +
+            " FROM PRODUTOS, websearch_to_tsquery('portuguese', ?) AS consulta WHERE busca @@ consulta) AS encontrados" +
+            " WHERE relevancia < ?::real OR (relevancia = ?::real AND id > ?) ORDER BY relevancia DESC, id LIMIT ?";
+    private static final String BUSCAR_NOMES_POR_PREFIXO =
+            "SELECT hash, nome FROM PRODUTOS WHERE nome ILIKE ? ORDER BY lower(nome), hash LIMIT ?";
+    private static final String BUSCAR_VERSAO_CATALOGO = "SELECT COALESCE(SUM(versao), 0)::bigint FROM catalogo_versao";
+    private static final String BUSCAR_POR_HASH_PARA_ATUALIZACAO = "SELECT " + COLUNAS + " FROM PRODUTOS WHERE hash = ? FOR UPDATE";
+    private static final String DELETAR = "DELETE FROM PRODUTOS WHERE hash = ? RETURNING nome, ean13";
+    private static final String BUSCAR_STATUS_POR_HASHES = "SELECT hash, lativo FROM PRODUTOS WHERE hash = ANY(?)";
+    private static final String BUSCAR_POR_HASHES = "SELECT " + COLUNAS + " FROM PRODUTOS WHERE hash = ANY(?)";
+
+    private static final String NOVO_PRECO = "CASE a.operacao" +
+            " WHEN 'fixo' THEN a.valor" +
+            " WHEN 'aumentar-valor' THEN p.preco + a.valor" +
+            " WHEN 'diminuir-valor' THEN p.preco - a.valor" +
+            " WHEN 'aumentar-percentualmente' THEN p.preco + (p.preco * (a.valor / 100))" +
+            " WHEN 'diminuir-percentualmente' THEN p.preco - (p.preco * (a.valor / 100))" +
+            " END";
+    private static final String ATUALIZAR_PRECO_EM_LOTE = "UPDATE PRODUTOS p SET preco = " + NOVO_PRECO + ", dtupdate = ?" +
+            " FROM unnest(?::uuid[], ?::text[], ?::numeric[]) AS a(hash, operacao, valor)" +
+            " WHERE p.hash = a.hash AND p.lativo = true AND " + NOVO_PRECO + " >= 0" +
+            " RETURNING " + COLUNAS_ALIAS_P;
+    private static final String ATUALIZAR_ESTOQUE_EM_LOTE = "UPDATE PRODUTOS p SET quantidade = p.quantidade + a.valor, dtupdate = ?" +
+            " FROM unnest(?::uuid[], ?::numeric[]) AS a(hash, valor)" +
+            " WHERE p.hash = a.hash AND p.lativo = true AND p.quantidade + a.valor >= 0" +
+            " RETURNING " + COLUNAS_ALIAS_P;
+
+    private static final Map<String, String> BUSCAR_POR = montarConsultas(COLUNAS_BUSCA,
+            "SELECT " + COLUNAS + " FROM PRODUTOS WHERE %s = ?");
+    private static final Map<String, String> ATUALIZAR_ATRIBUTO = montarConsultas(COLUNAS_ATUALIZAVEIS,
+            "UPDATE PRODUTOS SET %s = ?, dtupdate=? WHERE hash = ? RETURNING " + COLUNAS);
 
     /**
-     * Retorna uma consulta SQL para inserir um novo produto na tabela de produtos.
+     * Retorna uma consulta SQL para inserir um novo produto na tabela de produtos, devolvendo a linha inserida.
+     * Se o nome ou o EAN-13 já pertencerem a outro produto, nada é inserido e nenhuma linha é devolvida.
      *
      * @return Uma string contendo a consulta SQL de inserção.
      */
     public String inserir(){
-        return "INSERT INTO PRODUTOS " +
-                "(nome, descricao, ean13, preco, quantidade, estoque_min, dtcreate, dtupdate, lativo)" +
-                " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        return INSERIR;
     }
 
     /**
-     * Retorna uma consulta SQL para verificar se existe um produto com um determinado nome ou código EAN-13 na tabela de produtos.
+     * Retorna a consulta SQL que insere, em uma única instrução, os produtos de um bloco do lote.
+     * Os parâmetros são a data de criação e os arrays de nomes, descrições, EAN-13, preços, quantidades
+     * e estoques mínimos, todos na mesma ordem. As linhas inseridas são devolvidas; as que violariam a
+     * unicidade de nome ou EAN-13 são ignoradas.
      *
-     * @return Uma string contendo a consulta SQL para verificar a existência.
+     * @return Uma string contendo a consulta SQL de inserção em lote.
      */
-    public String existeProdutoComNomeOuEan13(){
-        return "SELECT COUNT(*) FROM PRODUTOS WHERE nome = ? OR ean13 = ?";
+    public String inserirEmLote(){
+        return INSERIR_EM_LOTE;
     }
-    
+
+    /**
+     * Retorna a consulta SQL que busca, entre os arrays de nomes e de EAN-13 informados, os que já
+     * pertencem a algum produto.
+     *
+     * @return Uma string contendo a consulta SQL de busca de duplicados.
+     */
+    public String buscarNomesEEan13Existentes(){
+        return BUSCAR_NOMES_E_EAN13_EXISTENTES;
+    }
+
     /**
     * Gera uma consulta SQL para buscar produtos no banco de dados com base em um critério específico.
     *
     * @return Uma string contendo a consulta SQL para buscar produtos com base no critério fornecido.
+    * @throws IllegalArgumentException Se a coluna não estiver no catálogo de consultas.
     */
     public String buscarPor(String coluna) {
-        return "SELECT * FROM PRODUTOS WHERE " + coluna + " = ?";
+        return obterDoCatalogo(BUSCAR_POR, coluna);
+    }
+
+    /**
+     * Retorna a consulta SQL que busca um produto pelo hash bloqueando a linha até o fim da transação.
+     *
+     * @return Uma string contendo a consulta SQL de busca com bloqueio.
+     */
+    public String buscarPorHashParaAtualizacao() {
+        return BUSCAR_POR_HASH_PARA_ATUALIZACAO;
     }
 
+    /**
+     * Retorna a consulta SQL que atualiza um único atributo do produto e sua data de atualização,
+     * devolvendo a linha atualizada.
+     *
+     * @param campo A coluna a ser atualizada.
+     * @return Uma string contendo a consulta SQL de atualização.
+     * @throws IllegalArgumentException Se a coluna não estiver no catálogo de consultas.
+     */
     public String atualizarAtributo(String campo) {
-        return "UPDATE PRODUTOS SET " + campo + " = ?, dtupdate=? WHERE hash = ?";
+        return obterDoCatalogo(ATUALIZAR_ATRIBUTO, campo);
     }
 
     public String atualizar(){
-        return "UPDATE PRODUTOS SET descricao = ?, preco=?, quantidade=?, estoque_min=?, dtupdate=? WHERE hash = ?";
+        return ATUALIZAR;
     }
-  
+
     /**
      * Retorna uma consulta SQL para buscar todos os produtos na tabela de produtos.
      *
      * @return Uma string contendo a consulta SQL de busca de todos os produtos.
      */
     public String buscarTodos(){
-        return "SELECT * FROM PRODUTOS";
+        return BUSCAR_TODOS;
     }
-    
+
     /**
-    * Gera uma consulta SQL para buscar todos os produtos com estoque abaixo do valor mínimo.
+     * Retorna a consulta SQL que busca todos os produtos com o status informado, na ordem do
+     * índice (lativo, id), o que permite entregar as linhas sem ordenação em memória.
+     *
+     * @return Uma string contendo a consulta SQL de busca por status.
+     */
+    public String buscarTodosPorStatus() {
+        return BUSCAR_TODOS_POR_STATUS;
+    }
+
+    /**
+    * Gera uma consulta SQL para buscar todos os produtos com estoque abaixo do valor mínimo, da maior para a
+    * menor falta de estoque. O predicado e a ordem são os do índice parcial de estoque baixo.
     *
     * @return Uma string contendo a consulta SQL para buscar produtos com estoque abaixo do valor mínimo.
     */
     public String buscarTodosComEstoqueBaixo() {
-        return "SELECT * FROM PRODUTOS WHERE lativo = true AND quantidade < estoque_min";}
+        return BUSCAR_TODOS_COM_ESTOQUE_BAIXO;
+    }
+
+    /**
+     * Retorna a consulta SQL que busca a página de produtos seguinte ao id informado, em ordem de id.
+     * Os parâmetros são o último id da página anterior e o limite de linhas.
+     *
+     * @return Uma string contendo a consulta SQL de busca paginada.
+     */
+    public String buscarPagina() {
+        return BUSCAR_PAGINA;
+    }
+
+    /**
+     * Retorna a consulta SQL que busca a página de produtos com o status informado seguinte ao id informado.
+     * Os parâmetros são o status, o último id da página anterior e o limite de linhas.
+     *
+     * @return Uma string contendo a consulta SQL de busca paginada por status.
+     */
+    public String buscarPaginaPorStatus() {
+        return BUSCAR_PAGINA_POR_STATUS;
+    }
+
+    /**
+     * Retorna a consulta SQL que busca a página de produtos com estoque abaixo do mínimo, da maior para a menor
+     * falta de estoque. Os parâmetros são a sobra de estoque e o id do último produto da página anterior e o
+     * limite de linhas.
+     *
+     * @return Uma string contendo a consulta SQL de busca paginada de estoque baixo.
+     */
+    public String buscarPaginaComEstoqueBaixo() {
+        return BUSCAR_PAGINA_COM_ESTOQUE_BAIXO;
+    }
+
+    /**
+     * Retorna a consulta SQL que aplica, em uma única instrução, as operações de preço de um bloco do lote.
+     * Os parâmetros são a data de atualização e os arrays de hashes, operações e valores; o cálculo do novo
+     * preço e a verificação de valor negativo são feitos no banco. Somente os produtos ativos cujo novo
+     * preço não é negativo são alterados e devolvidos.
+     *
+     * @return Uma string contendo a consulta SQL de atualização de preços em lote.
+     */
+    public String atualizarPrecoEmLote() {
+        return ATUALIZAR_PRECO_EM_LOTE;
+    }
+
+    /**
+     * Retorna a consulta SQL que soma, em uma única instrução, os valores de estoque de um bloco do lote.
+     * Os parâmetros são a data de atualização e os arrays de hashes e valores. Somente os produtos ativos
+     * cujo novo estoque não é negativo são alterados e devolvidos.
+     *
+     * @return Uma string contendo a consulta SQL de atualização de estoque em lote.
+     */
+    public String atualizarEstoqueEmLote() {
+        return ATUALIZAR_ESTOQUE_EM_LOTE;
+    }
+
+    /**
+     * Retorna a consulta SQL que busca o status "lativo" dos produtos de um array de hashes.
+     *
+     * @return Uma string contendo a consulta SQL de busca de status.
+     */
+    public String buscarStatusPorHashes() {
+        return BUSCAR_STATUS_POR_HASHES;
+    }
+
+    /**
+     * Retorna a consulta SQL que busca os produtos de um array de hashes.
+     *
+     * @return Uma string contendo a consulta SQL de busca por hashes.
+     */
+    public String buscarPorHashes() {
+        return BUSCAR_POR_HASHES;
+    }
+
+    /**
+     * Retorna a consulta SQL da busca textual em nome e descrição, da maior para a menor relevância.
+     * Os parâmetros são o texto buscado, a relevância do último produto da página anterior (duas vezes),
+     * o id desse produto e o limite de linhas. A seleção dos produtos usa o índice GIN da coluna "busca".
+     *
+     * @return A consulta SQL da busca textual.
+     */
+    public String buscarTexto() {
+        return BUSCAR_TEXTO;
+    }
+
+    /**
+     * Retorna a consulta SQL que busca o hash e o nome dos produtos cujo nome começa com o padrão informado.
+     * Os parâmetros são o padrão do ILIKE, já terminado em "%", e o limite de linhas.
+     *
+     * @return A consulta SQL do autocompletar.
+     */
+    public String buscarNomesPorPrefixo() {
+        return BUSCAR_NOMES_POR_PREFIXO;
+    }
+
+    /**
+     * Retorna a consulta SQL da versão atual do catálogo, incrementada a cada escrita em produtos. A versão
+     * é a soma das faixas de catalogo_versao, para que escritas concorrentes não disputem a mesma linha.
+     *
+     * @return A consulta SQL da versão do catálogo.
+     */
+    public String buscarVersaoCatalogo() {
+        return BUSCAR_VERSAO_CATALOGO;
+    }
 
     /**
      * Retorna uma consulta SQL para deletar um produto da tabela de produtos com base no ID.
@@ -66,6 +285,19 @@ public class ProdutoSQL {
      * @return Uma string contendo a consulta SQL de deleção.
      */
     public String deletar(){
-        return "DELETE FROM PRODUTOS WHERE hash = ?";
+        return DELETAR;
+    }
+
+    private static Map<String, String> montarConsultas(List<String> colunas, String modelo) {
+        Map<String, String> consultas = new HashMap<>();
+        colunas.forEach(coluna -> consultas.put(coluna, String.format(modelo, coluna)));
+        return Collections.unmodifiableMap(consultas);
+    }
+
+    private static String obterDoCatalogo(Map<String, String> catalogo, String coluna) {
+        String consulta = catalogo.get(coluna);
+        if (consulta == null)
+            throw new IllegalArgumentException("A coluna '" + coluna + "' não é suportada nesta consulta.");
+        return consulta;
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,11 @@
+-- Versão 1: tabela de produtos.
+-- Os comandos usam IF NOT EXISTS para que bancos criados antes do controle de versões sejam aceitos como base.
+
 -- Extensão necessária para gerar UUIDs
 CREATE EXTENSION IF NOT EXISTS "uuid-ossp";
 
 -- Cria uma sequência para gerar IDs para produtos
-CREATE SEQUENCE produtos_id_seq
+CREATE SEQUENCE IF NOT EXISTS produtos_id_seq
     START 1
     INCREMENT 1
     MINVALUE 1
@@ -10,7 +13,7 @@ CREATE SEQUENCE produtos_id_seq
     CACHE 1;
 
 -- Define a tabela PRODUTO
-CREATE TABLE PRODUTOS (
+CREATE TABLE IF NOT EXISTS PRODUTOS (
     -- ID único para cada produto gerado pela sequência
     id bigint DEFAULT nextval('produtos_id_seq') PRIMARY KEY,
     -- UUID único gerado automaticamente
@@ -33,4 +36,8 @@ CREATE TABLE PRODUTOS (
     dtupdate timestamp,
     -- Indicador de ativo/inativo
     lativo boolean
-);
\ No newline at end of file
+);
+
+-- Garante que nome e EAN-13 não se repitam entre produtos
+CREATE UNIQUE INDEX IF NOT EXISTS produtos_nome_uk ON PRODUTOS (nome);
+CREATE UNIQUE INDEX IF NOT EXISTS produtos_ean13_uk ON PRODUTOS (ean13);
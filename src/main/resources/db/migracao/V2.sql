@@ -0,0 +1,10 @@
+-- Versão 2: índices das listagens.
+-- Busca por hash, nome e EAN-13 já é atendida pelos índices únicos da versão 1.
+
+-- Listagem e paginação por status: WHERE lativo = ? [AND id > ?] ORDER BY id
+CREATE INDEX IF NOT EXISTS produtos_lativo_id_idx ON PRODUTOS (lativo, id);
+
+-- Listagem e paginação de estoque baixo: contém apenas os produtos ativos abaixo do estoque mínimo,
+-- de modo que o índice continua pequeno mesmo com o catálogo inteiro.
+CREATE INDEX IF NOT EXISTS produtos_estoque_baixo_idx ON PRODUTOS (id)
+    WHERE lativo = true AND quantidade < estoque_min;
@@ -0,0 +1,19 @@
+-- Versão 3: notificação de alterações de produtos.
+-- Cada linha inserida, alterada ou removida publica o hash do produto no canal "produtos_changed".
+-- As notificações são entregues aos ouvintes somente após a confirmação da transação.
+
+CREATE OR REPLACE FUNCTION produtos_notificar_alteracao() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('produtos_changed', OLD.hash::text);
+    ELSE
+        PERFORM pg_notify('produtos_changed', NEW.hash::text);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS produtos_notificar_alteracao ON PRODUTOS;
+CREATE TRIGGER produtos_notificar_alteracao
+    AFTER INSERT OR UPDATE OR DELETE ON PRODUTOS
+    FOR EACH ROW EXECUTE PROCEDURE produtos_notificar_alteracao();
@@ -0,0 +1,7 @@
+-- Versão 4: estoque baixo ordenado pela falta de estoque.
+-- O índice parcial passa a ser ordenado pela sobra de estoque (negativa) e pelo id, atendendo à listagem
+-- e à paginação por cursor "(quantidade - estoque_min, id) > (?, ?)" sem ordenação em memória.
+
+DROP INDEX IF EXISTS produtos_estoque_baixo_idx;
+CREATE INDEX produtos_estoque_baixo_idx ON PRODUTOS ((quantidade - estoque_min), id)
+    WHERE lativo = true AND quantidade < estoque_min;
@@ -0,0 +1,9 @@
+-- Versão 5: busca textual em nome e descrição.
+-- A coluna gerada mantém o tsvector atualizado a cada escrita; o nome tem peso maior que a descrição.
+ALTER TABLE PRODUTOS ADD COLUMN IF NOT EXISTS busca tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('portuguese', coalesce(nome, '')), 'A') ||
+    setweight(to_tsvector('portuguese', coalesce(descricao, '')), 'B')
+) STORED;
+
+-- Busca: WHERE busca @@ consulta
+CREATE INDEX IF NOT EXISTS produtos_busca_idx ON PRODUTOS USING GIN (busca);
@@ -0,0 +1,22 @@
+-- Versão 6: versão do catálogo de produtos.
+-- Um contador único, incrementado uma vez por instrução que insere, altera ou remove produtos. A nova versão
+-- fica visível junto com as alterações, na confirmação da transação, e serve de ETag das listagens.
+-- Transações de escrita concorrentes aguardam umas às outras apenas na atualização dessa linha.
+
+CREATE TABLE IF NOT EXISTS catalogo_versao (
+    id     integer PRIMARY KEY CHECK (id = 1),
+    versao bigint  NOT NULL
+);
+INSERT INTO catalogo_versao (id, versao) VALUES (1, 1) ON CONFLICT DO NOTHING;
+
+CREATE OR REPLACE FUNCTION produtos_incrementar_versao() RETURNS trigger AS $$
+BEGIN
+    UPDATE catalogo_versao SET versao = versao + 1 WHERE id = 1;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS produtos_incrementar_versao ON PRODUTOS;
+CREATE TRIGGER produtos_incrementar_versao
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON PRODUTOS
+    FOR EACH STATEMENT EXECUTE PROCEDURE produtos_incrementar_versao();
@@ -0,0 +1,18 @@
+-- Versão 7: versão do catálogo sem linha única.
+-- Na versão 6, toda transação que escrevia em produtos atualizava a mesma linha de catalogo_versao e mantinha
+-- o seu bloqueio até a confirmação, serializando todas as escritas. O contador passa a ser dividido em 64
+-- faixas: cada instrução incrementa apenas a faixa do seu processo do servidor, e a versão do catálogo é a
+-- soma das faixas. Como as faixas só crescem, a soma lida em um snapshot aumenta a cada escrita confirmada.
+-- Uma sequence não serviria: o nextval não é desfeito no rollback e fica visível antes da confirmação, de
+-- modo que a versão mudaria sem que as alterações correspondentes estivessem visíveis.
+
+ALTER TABLE catalogo_versao DROP CONSTRAINT IF EXISTS catalogo_versao_id_check;
+ALTER TABLE catalogo_versao ADD CONSTRAINT catalogo_versao_id_check CHECK (id BETWEEN 0 AND 63);
+INSERT INTO catalogo_versao (id, versao) SELECT faixa, 0 FROM generate_series(0, 63) AS faixa ON CONFLICT DO NOTHING;
+
+CREATE OR REPLACE FUNCTION produtos_incrementar_versao() RETURNS trigger AS $$
+BEGIN
+    UPDATE catalogo_versao SET versao = versao + 1 WHERE id = pg_backend_pid() % 64;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;